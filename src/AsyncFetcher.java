@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Fetches html pages without blocking a thread for every page. The requests
+ * are sent with the asynchronous API of {@link HttpClient}, so hundreds of
+ * pages can be on their way at once while only a few threads parse them. The
+ * pages are the same as {@link HTMLFetcher#fetchHTML(URL, int)} returns: only
+ * html with an OK status is kept, and redirects are followed up to the given
+ * number of times.
+ */
+public class AsyncFetcher {
+
+	/** The default number of requests that can be on their way at once. */
+	public static final int DEFAULT_REQUESTS = 100;
+
+	/** How long to wait for a connection or a response. */
+	private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+	/** Finds the charset of a content type. */
+	private static final Pattern CHARSET = Pattern.compile("(?i)charset=\"?([^\";\\s]+)");
+
+	private final HttpClient client;
+	/** One permit for every request that may be on its way. */
+	private final Semaphore requests;
+	private final int capacity;
+
+	/**
+	 * Initializes a fetcher with the default number of requests at once.
+	 */
+	public AsyncFetcher() {
+		this(DEFAULT_REQUESTS);
+	}
+
+	/**
+	 * Initializes a fetcher.
+	 *
+	 * @param requests The most requests that can be on their way at once
+	 */
+	public AsyncFetcher(int requests) {
+		this.capacity = Math.max(1, requests);
+		this.requests = new Semaphore(capacity);
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.followRedirects(HttpClient.Redirect.NEVER)
+				.connectTimeout(TIMEOUT)
+				.build();
+	}
+
+	/**
+	 * It will return the most requests that can be on their way at once.
+	 *
+	 * @return the number of requests
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Start fetching the html of the url. This method only waits while as many
+	 * requests as the capacity are on their way already. A page keeps its permit
+	 * while its redirects are followed, so a redirect never waits for one on the
+	 * threads of the client.
+	 *
+	 * @param url       the url to fetch
+	 * @param redirects the number of times to follow a redirect response
+	 * @return a future of the html, which is null if the response was not OK html,
+	 *         or fails with an {@link IOException} if the page could not be read
+	 */
+	public CompletableFuture<String> fetchHTML(URL url, int redirects) {
+		requests.acquireUninterruptibly();
+		CompletableFuture<String> page;
+		try {
+			page = send(url, redirects);
+		} catch (RuntimeException e) {
+			requests.release();
+			throw e;
+		}
+		return page.whenComplete((html, error) -> requests.release());
+	}
+
+	/**
+	 * Send the request for the url, and the requests of its redirects once the
+	 * responses arrive, with the permit of the page already taken.
+	 *
+	 * @param url       the url to fetch
+	 * @param redirects the number of times to follow a redirect response
+	 * @return a future of the html, which is null if the response was not OK html
+	 */
+	private CompletableFuture<String> send(URL url, int redirects) {
+		HttpRequest request;
+		try {
+			request = HttpRequest.newBuilder(url.toURI()).timeout(TIMEOUT).GET().build();
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return CompletableFuture.failedFuture(new IOException("Unable to request " + url, e));
+		}
+
+		return client.sendAsync(request, AsyncFetcher::body).thenCompose(result -> {
+			int status = result.statusCode();
+			if (status >= 200 && status < 300) {
+				String html = result.body();
+				return CompletableFuture.completedFuture(html == null ? null : html.lines().collect(Collectors.joining("\n")));
+			}
+			Optional<String> location = result.headers().firstValue("Location");
+			if (status >= 300 && status < 400 && redirects > 0 && location.isPresent()) {
+				try {
+					return send(new URL(url, location.get()), redirects - 1);
+				} catch (MalformedURLException e) {
+					return CompletableFuture.failedFuture(e);
+				}
+			}
+			return CompletableFuture.completedFuture(null);
+		});
+	}
+
+	/**
+	 * Reads the body of an OK html response, and skips every other body.
+	 *
+	 * @param info the status and headers of the response
+	 * @return the body subscriber
+	 */
+	private static HttpResponse.BodySubscriber<String> body(HttpResponse.ResponseInfo info) {
+		String type = info.headers().firstValue("Content-Type").orElse("");
+		if (info.statusCode() < 200 || info.statusCode() >= 300 || !type.contains("html")) {
+			return HttpResponse.BodySubscribers.replacing(null);
+		}
+		return HttpResponse.BodySubscribers.ofString(charset(type));
+	}
+
+	/**
+	 * Returns the charset of the content type, or the default charset like the
+	 * {@link HttpsFetcher} uses.
+	 *
+	 * @param type the content type
+	 * @return the charset
+	 */
+	private static Charset charset(String type) {
+		Matcher matcher = CHARSET.matcher(type);
+		if (matcher.find()) {
+			try {
+				return Charset.forName(matcher.group(1));
+			} catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+				// the default charset below
+			}
+		}
+		return Charset.defaultCharset();
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * The Okapi BM25 ranking. Rare words weigh more than common ones, every extra
+ * match of a word counts less than the one before, and long documents are
+ * scored down so that they do not win only by having more words.
+ */
+public class BM25Model implements ScoringModel {
+
+	/** The usual value of k1. */
+	public static final double DEFAULT_K1 = 1.2;
+
+	/** The usual value of b. */
+	public static final double DEFAULT_B = 0.75;
+
+	private final double k1;
+	private final double b;
+
+	/**
+	 * Initializes the model with the usual parameters.
+	 */
+	public BM25Model() {
+		this(DEFAULT_K1, DEFAULT_B);
+	}
+
+	/**
+	 * Initializes the model.
+	 *
+	 * @param k1 How fast more matches of a word stop counting, 0 or more
+	 * @param b  How much the length of a document counts, from 0 to 1
+	 */
+	public BM25Model(double k1, double b) {
+		if (k1 < 0 || b < 0 || b > 1) {
+			throw new IllegalArgumentException("Invalid BM25 parameters k1=" + k1 + " b=" + b);
+		}
+		this.k1 = k1;
+		this.b = b;
+	}
+
+	/**
+	 * Returns the inverse document frequency of the word, which is never
+	 * negative.
+	 */
+	@Override
+	public double weight(int documentFrequency, int documentCount) {
+		return Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+	}
+
+	@Override
+	public double score(double weight, int frequency, float norm) {
+		return weight * frequency * (k1 + 1) / (frequency + k1 * (1 - b + b * norm));
+	}
+
+	/**
+	 * Returns true for a BM25 model with the same parameters, which scores every
+	 * search the same.
+	 */
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof BM25Model)) {
+			return false;
+		}
+		BM25Model model = (BM25Model) other;
+		return Double.compare(k1, model.k1) == 0 && Double.compare(b, model.b) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Double.hashCode(k1) + Double.hashCode(b);
+	}
+
+	@Override
+	public String toString() {
+		return "BM25(k1=" + k1 + ", b=" + b + ")";
+	}
+}
@@ -6,7 +6,6 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -20,7 +19,6 @@ import org.apache.commons.text.StringEscapeUtils;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 @SuppressWarnings("serial")
 public class BulmaSearchServlet extends HttpServlet {
@@ -28,12 +26,22 @@ public class BulmaSearchServlet extends HttpServlet {
 	private static Logger log = Log.getRootLogger();
 
 	private ConcurrentLinkedQueue<String> messages;
-	private final ThreadSafeInvertedIndex threadSafe;
+	private final InvertedIndexInterface index;
+	private final int pageSize;
 	private static AtomicInteger history = new AtomicInteger();
 
-	public BulmaSearchServlet(ThreadSafeInvertedIndex threadSafe) {
+	public BulmaSearchServlet(InvertedIndexInterface index) {
+		this(index, SearchServer.DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * @param index    The index to search
+	 * @param pageSize The most results to show for a search, or 0 or less for all
+	 */
+	public BulmaSearchServlet(InvertedIndexInterface index, int pageSize) {
 		super();
-		this.threadSafe=threadSafe;
+		this.index=index;
+		this.pageSize = pageSize;
 		messages = new ConcurrentLinkedQueue<>();
 	}
 
@@ -83,18 +91,12 @@ public class BulmaSearchServlet extends HttpServlet {
 			out.printf("				<p>No search result.</p>%n");
 		}
 		else {
-			SnowballStemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
 			
 			for (String message : messages) {
-				TreeSet<String> words = new TreeSet<>();
-				for (String s : TextParser.parse(message)) {
-					String word = stemmer.stem(s).toString();
-					if (!word.isEmpty()) {
-						words.add(word);
-					}
-				}
+				// the messages are escaped, but the quotes of a phrase are needed
+				Query query = Query.parse(StringEscapeUtils.unescapeHtml4(message));
 				ArrayList<Result> results;
-				results =threadSafe.partialSearch(words);
+				results =index.search(query, false, pageSize);
 				for(Result x:results )
 				{
 					String path = x.getPath();
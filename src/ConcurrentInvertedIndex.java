@@ -0,0 +1,587 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread safe inverted index that splits the words into stripes, each with
+ * its own {@link ReadWriteLock}, instead of locking the whole index for every
+ * operation. Merging a page or file only locks the stripes its words fall
+ * into, one at a time, so several merges and searches can run at once.
+ *
+ * Document ids are handed out through a {@link ConcurrentHashMap}, and the
+ * word count of every document is kept in atomic counters, so neither needs a
+ * stripe lock.
+ *
+ * An exact search locks the stripes of its words, and a partial search of plain
+ * words locks one stripe at a time while it reads the words of that stripe. A
+ * partial search with operators or phrases, a batch of queries and a copy of
+ * the whole index still lock every stripe, so they wait for the writers of all
+ * of them.
+ */
+public class ConcurrentInvertedIndex implements WritableIndexInterface {
+
+	/** The default number of stripes to use when not specified. */
+	public static final int DEFAULT_STRIPES = 16;
+
+	/** The number of documents kept in each page of paths and counts. */
+	private static final int PAGE_SIZE = 1024;
+
+	private final TreeMap<String, PostingList>[] stripes;
+	private final ReadWriteLock[] locks;
+
+	private final ConcurrentHashMap<String, Integer> ids;
+	private volatile String[][] paths;
+	private volatile AtomicIntegerArray[] counts;
+	private volatile int documentCount;
+	private final LongAdder wordTotal;
+	/** Counts the changes made to this index. */
+	private final LongAdder generation;
+	/** How this index runs its searches. */
+	private volatile SearchSettings settings;
+
+	/**
+	 * Initializes the index with the default number of stripes.
+	 */
+	public ConcurrentInvertedIndex() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Initializes the index with the given number of stripes.
+	 *
+	 * @param stripes The number of independently locked stripes
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public ConcurrentInvertedIndex(int stripes) {
+		this.stripes = new TreeMap[Math.max(1, stripes)];
+		this.locks = new ReadWriteLock[this.stripes.length];
+		for (int i = 0; i < this.stripes.length; i++) {
+			this.stripes[i] = new TreeMap<>();
+			this.locks[i] = new ReadWriteLock();
+		}
+		this.ids = new ConcurrentHashMap<>();
+		this.paths = new String[0][];
+		this.counts = new AtomicIntegerArray[0];
+		this.documentCount = 0;
+		this.wordTotal = new LongAdder();
+		this.generation = new LongAdder();
+		this.settings = SearchSettings.DEFAULT;
+	}
+
+	/**
+	 * Returns the stripe the word belongs to.
+	 *
+	 * @param word The word
+	 * @return index of the stripe
+	 */
+	private int stripeOf(String word) {
+		int hash = word.hashCode();
+		hash ^= (hash >>> 16);
+		return (hash & 0x7FFFFFFF) % stripes.length;
+	}
+
+	/**
+	 * Returns the document id of the path, giving it the next free id if it has
+	 * not been seen before. The path is stored before the id is published, so
+	 * any thread that finds the id can also find the path.
+	 *
+	 * @param path path of the file in directory
+	 * @return the document id
+	 */
+	private int documentOf(String path) {
+		Integer id = ids.get(path);
+		if (id != null) {
+			return id;
+		}
+		synchronized (ids) {
+			id = ids.get(path);
+			if (id == null) {
+				id = documentCount;
+				int page = id / PAGE_SIZE;
+				if (page >= paths.length) {
+					String[][] morePaths = Arrays.copyOf(paths, page + 1);
+					morePaths[page] = new String[PAGE_SIZE];
+					AtomicIntegerArray[] moreCounts = Arrays.copyOf(counts, page + 1);
+					moreCounts[page] = new AtomicIntegerArray(PAGE_SIZE);
+					paths = morePaths;
+					counts = moreCounts;
+				}
+				paths[page][id % PAGE_SIZE] = path;
+				documentCount = id + 1;
+				ids.put(path, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Returns the path of the document id.
+	 *
+	 * @param document The document id
+	 * @return the path or url of that document
+	 */
+	@Override
+	public String getPath(int document) {
+		return paths[document / PAGE_SIZE][document % PAGE_SIZE];
+	}
+
+	@Override
+	public int getWordCount(int document) {
+		return counts[document / PAGE_SIZE].get(document % PAGE_SIZE);
+	}
+
+	/**
+	 * Add to the word count of the document.
+	 *
+	 * @param document The document id
+	 * @param delta    The number of words to add
+	 */
+	private void addWordCount(int document, int delta) {
+		counts[document / PAGE_SIZE].addAndGet(document % PAGE_SIZE, delta);
+		wordTotal.add(delta);
+	}
+
+	@Override
+	public void add(String word, String path, int position) {
+		int document = documentOf(path);
+		addWordCount(document, 1);
+		int stripe = stripeOf(word);
+		locks[stripe].lockReadWrite();
+		try {
+			PostingList postings = stripes[stripe].get(word);
+			if (postings == null) {
+				postings = new PostingList();
+				stripes[stripe].put(word, postings);
+			}
+			postings.getOrAdd(document).add(position);
+		} finally {
+			locks[stripe].unlockReadWrite();
+		}
+		// after the change, so a search that sees the old generation never misses it
+		generation.increment();
+	}
+
+	@Override
+	public void addAll(InvertedIndex other) {
+		DocumentDictionary documents = other.getDocuments();
+		int[] counts = new int[documents.size()];
+		for (int document = 0; document < counts.length; document++) {
+			counts[document] = other.getWordCount(document);
+		}
+		addAll(other.postings(), documents, counts);
+	}
+
+	@Override
+	public void addAll(FrozenInvertedIndex other) {
+		DocumentDictionary documents = other.getDocuments();
+		int[] counts = new int[documents.size()];
+		for (int document = 0; document < counts.length; document++) {
+			counts[document] = other.getWordCount(document);
+		}
+		addAll(other.postings(), documents, counts);
+	}
+
+	/**
+	 * Add the postings of another index to this index. The words are first
+	 * grouped by stripe, so every stripe is locked at most once.
+	 *
+	 * @param postings  The words and postings of the other index
+	 * @param documents The document dictionary of the other index
+	 * @param counts    The word counts of the other index by document id
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void addAll(Iterator<Map.Entry<String, PostingList>> postings, DocumentDictionary documents,
+			int[] counts) {
+		int[] remap = new int[documents.size()];
+		// counts go first so a search never sees a document with postings but no words
+		for (int document = 0; document < remap.length; document++) {
+			remap[document] = documentOf(documents.getPath(document));
+			addWordCount(remap[document], counts[document]);
+		}
+
+		ArrayList<Map.Entry<String, PostingList>>[] groups = new ArrayList[stripes.length];
+		while (postings.hasNext()) {
+			Map.Entry<String, PostingList> entry = postings.next();
+			int stripe = stripeOf(entry.getKey());
+			if (groups[stripe] == null) {
+				groups[stripe] = new ArrayList<>();
+			}
+			groups[stripe].add(entry);
+		}
+
+		for (int stripe = 0; stripe < stripes.length; stripe++) {
+			if (groups[stripe] == null) {
+				continue;
+			}
+			locks[stripe].lockReadWrite();
+			try {
+				for (Map.Entry<String, PostingList> entry : groups[stripe]) {
+					PostingList theirs = entry.getValue();
+					PostingList mine = stripes[stripe].get(entry.getKey());
+					if (mine == null) {
+						mine = new PostingList();
+						stripes[stripe].put(entry.getKey(), mine);
+					}
+					for (int i = 0; i < theirs.size(); i++) {
+						mine.add(remap[theirs.document(i)], theirs.positions(i));
+					}
+				}
+			} finally {
+				locks[stripe].unlockReadWrite();
+			}
+		}
+		generation.increment();
+	}
+
+	@Override
+	public boolean contains(String word) {
+		int stripe = stripeOf(word);
+		locks[stripe].lockReadOnly();
+		try {
+			return stripes[stripe].containsKey(word);
+		} finally {
+			locks[stripe].unlockReadOnly();
+		}
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		Integer document = ids.get(location);
+		if (document == null) {
+			return false;
+		}
+		int stripe = stripeOf(word);
+		locks[stripe].lockReadOnly();
+		try {
+			PostingList postings = stripes[stripe].get(word);
+			return postings != null && postings.get(document) != null;
+		} finally {
+			locks[stripe].unlockReadOnly();
+		}
+	}
+
+	@Override
+	public boolean contains(String word, String location, int position) {
+		Integer document = ids.get(location);
+		if (document == null) {
+			return false;
+		}
+		int stripe = stripeOf(word);
+		locks[stripe].lockReadOnly();
+		try {
+			PostingList postings = stripes[stripe].get(word);
+			PositionList positions = postings == null ? null : postings.get(document);
+			return positions != null && positions.contains(position);
+		} finally {
+			locks[stripe].unlockReadOnly();
+		}
+	}
+
+	@Override
+	public ArrayList<Result> exactSearch(TreeSet<String> arrayline) {
+		return search(arrayline, true, 0);
+	}
+
+	@Override
+	public ArrayList<Result> partialSearch(TreeSet<String> arrayline) {
+		return search(arrayline, false, 0);
+	}
+
+	@Override
+	public ArrayList<Result> search(TreeSet<String> arrayline, boolean exact, int k) {
+		return search(new Query(arrayline), exact, k);
+	}
+
+	/**
+	 * Search with only the stripes of the query words locked for an exact search,
+	 * always locked in stripe order. A partial search of plain words locks one
+	 * stripe at a time, see {@link #partialSearch(TreeSet, int)}, and a partial
+	 * search with operators or phrases locks every stripe.
+	 */
+	@Override
+	public ArrayList<Result> search(Query query, boolean exact, int k) {
+		if (!exact && query.isPlain()) {
+			return partialSearch(query.getWords(), k);
+		}
+		boolean[] needed = new boolean[stripes.length];
+		for (String word : query.getTerms()) {
+			needed[stripeOf(word)] = true;
+		}
+		if (!exact) {
+			Arrays.fill(needed, true);
+		}
+		for (int stripe = 0; stripe < stripes.length; stripe++) {
+			if (needed[stripe]) {
+				locks[stripe].lockReadOnly();
+			}
+		}
+		try {
+			return QueryEngine.search(this, query, exact, k, settings);
+		} finally {
+			for (int stripe = 0; stripe < stripes.length; stripe++) {
+				if (needed[stripe]) {
+					locks[stripe].unlockReadOnly();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Search for the words as prefixes with only one stripe locked at a time, so a
+	 * search only waits for the writers of the stripe it is reading. The words of
+	 * every stripe are added up as soon as they are found, in the same order as
+	 * the query engine reads them, so the results are the same.
+	 *
+	 * @param words The query words
+	 * @param k     The number of results to return, or 0 or less for all
+	 * @return the best k results in sorted order
+	 */
+	private ArrayList<Result> partialSearch(TreeSet<String> words, int k) {
+		int limit = getDocumentCount();
+		ScoringModel scoring = settings.getScoringModel();
+		ParallelSearch table = ParallelSearch.table(0, limit);
+		ArrayList<PostingsIterator> terms = new ArrayList<>();
+		for (String word : words) {
+			for (int stripe = 0; stripe < stripes.length; stripe++) {
+				locks[stripe].lockReadOnly();
+				try {
+					prefixIterators(stripes[stripe], word, terms);
+					table.add(this, terms, limit, scoring);
+				} finally {
+					locks[stripe].unlockReadOnly();
+				}
+				terms.clear();
+			}
+		}
+		ArrayList<Result> resultList = table.results(this, k, scoring);
+		Collections.sort(resultList);
+		if (k > 0 && resultList.size() > k) {
+			resultList.subList(k, resultList.size()).clear();
+		}
+		return resultList;
+	}
+
+	/**
+	 * Search a batch with every stripe locked until every query is done.
+	 */
+	@Override
+	public ArrayList<ArrayList<Result>> search(List<Query> queries, boolean exact, WorkQueue queue) {
+		lockAll();
+		try {
+			return QueryBatch.search(this, queries, exact, queue, settings);
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public long getGeneration() {
+		return generation.sum();
+	}
+
+	@Override
+	public SearchSettings getSearchSettings() {
+		return settings;
+	}
+
+	@Override
+	public void setSearchSettings(SearchSettings settings) {
+		this.settings = settings;
+	}
+
+	@Override
+	public float getNorm(int document) {
+		long total = wordTotal.sum();
+		return total == 0 ? 1 : (float) ((double) getWordCount(document) * documentCount / total);
+	}
+
+	/**
+	 * Returns the number of documents right now. The query engine reads it once
+	 * when a search starts and skips the documents added after that.
+	 */
+	@Override
+	public int getDocumentCount() {
+		return documentCount;
+	}
+
+	/**
+	 * Returns an iterator over the postings of the word. The stripe of the word
+	 * must be locked while it is used.
+	 */
+	@Override
+	public PostingsIterator iterator(String word) {
+		PostingList postings = stripes[stripeOf(word)].get(word);
+		return postings == null ? null : postings.iterator();
+	}
+
+	/**
+	 * Add an iterator for every word that starts with the prefix. Every stripe
+	 * must be locked while they are used.
+	 */
+	@Override
+	public void prefixIterators(String prefix, Collection<PostingsIterator> iterators) {
+		for (TreeMap<String, PostingList> stripe : stripes) {
+			prefixIterators(stripe, prefix, iterators);
+		}
+	}
+
+	/**
+	 * Add an iterator for every word of one stripe that starts with the prefix,
+	 * in word order.
+	 *
+	 * @param stripe    The stripe, which must be locked
+	 * @param prefix    The prefix to look for
+	 * @param iterators The collection to add the iterators to
+	 */
+	private static void prefixIterators(TreeMap<String, PostingList> stripe, String prefix,
+			Collection<PostingsIterator> iterators) {
+		for (Map.Entry<String, PostingList> entry : stripe.tailMap(prefix).entrySet()) {
+			if (entry.getKey().startsWith(prefix)) {
+				iterators.add(entry.getValue().iterator());
+			} else {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Lock every stripe for reading, always in the same order.
+	 */
+	private void lockAll() {
+		for (ReadWriteLock lock : locks) {
+			lock.lockReadOnly();
+		}
+	}
+
+	/**
+	 * Unlock every stripe locked by {@link #lockAll()}.
+	 */
+	private void unlockAll() {
+		for (ReadWriteLock lock : locks) {
+			lock.unlockReadOnly();
+		}
+	}
+
+	/**
+	 * Returns the words of every stripe in one map, in word order. The posting
+	 * lists are shared, not copied, so all stripes must be locked while it is
+	 * built and used.
+	 *
+	 * @return map of every word to its postings
+	 */
+	private TreeMap<String, PostingList> merged() {
+		TreeMap<String, PostingList> merged = new TreeMap<>();
+		for (TreeMap<String, PostingList> stripe : stripes) {
+			merged.putAll(stripe);
+		}
+		return merged;
+	}
+
+	/**
+	 * Returns the dictionary of the document ids used by this index, as a copy.
+	 * 
+	 * @return the document dictionary
+	 */
+	public DocumentDictionary getDocuments() {
+		DocumentDictionary documents = new DocumentDictionary();
+		int limit = documentCount;
+		for (int document = 0; document < limit; document++) {
+			documents.add(getPath(document));
+		}
+		return documents;
+	}
+
+	/**
+	 * Returns the word count of every document id, up to the given number of
+	 * documents.
+	 *
+	 * @param limit the number of documents
+	 * @return word counts by document id
+	 */
+	private int[] getWordCounts(int limit) {
+		int[] location = new int[limit];
+		for (int document = 0; document < limit; document++) {
+			location[document] = getWordCount(document);
+		}
+		return location;
+	}
+
+	/**
+	 * Returns the words and their postings in word order. This is a copy of the
+	 * word map taken while every stripe is locked, but the posting lists are
+	 * shared, so the index must not be changed while the iterator is used.
+	 * 
+	 * @return iterator over every word and its postings
+	 */
+	public Iterator<Map.Entry<String, PostingList>> postings() {
+		lockAll();
+		try {
+			return merged().entrySet().iterator();
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public FrozenInvertedIndex freeze() {
+		lockAll();
+		try {
+			DocumentDictionary documents = getDocuments();
+			FrozenInvertedIndex frozen = FrozenInvertedIndex.build(merged(), documents,
+					getWordCounts(documents.size()));
+			frozen.setSearchSettings(settings);
+			return frozen;
+		} finally {
+			unlockAll();
+		}
+	}
+
+	/**
+	 * Write the segment with every stripe locked, so the words are read the same
+	 * in both passes of the writer.
+	 */
+	@Override
+	public void saveSegment(Path output) throws IOException {
+		lockAll();
+		try {
+			DocumentDictionary documents = getDocuments();
+			TreeMap<String, PostingList> words = merged();
+			IndexSegment.write(() -> words.entrySet().iterator(), documents, getWordCounts(documents.size()), output);
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public void toJSON(Path output) throws IOException {
+		lockAll();
+		try {
+			TreeJSONWriter.asDoubleNestedObject(merged().entrySet().iterator(), getDocuments(), output);
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public void toLocationJSON(Path output) throws IOException {
+		if (output != null) {
+			TreeMap<String, Integer> location = new TreeMap<>();
+			int limit = documentCount;
+			for (int document = 0; document < limit; document++) {
+				location.put(getPath(document), getWordCount(document));
+			}
+			TreeJSONWriter.asObject(location, output);
+		}
+	}
+}
@@ -0,0 +1,366 @@
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Crawls the web in three stages that each have threads of their own. The
+ * fetch stage downloads the pages, the parse stage strips the html, finds the
+ * links and stems the words into a small index of the page, and the merge stage
+ * adds those indexes to the shared index. The stages are joined by bounded
+ * queues, so when the parsers or the merge fall behind the fetchers wait for
+ * room instead of keeping more and more pages in memory.
+ *
+ * <p>
+ * The fetch stage is a {@link WorkQueue}, since fetching mostly waits for the
+ * network and can use a large or virtual queue. The parse stage needs about
+ * one thread for every core, and the merge stage one thread, since every merge
+ * takes the lock of the index anyway. The depth of every queue is kept, and
+ * the deepest it has been, to tell which stage is too slow.
+ * </p>
+ */
+public class CrawlPipeline {
+
+	/** The default number of parse threads. */
+	public static final int DEFAULT_PARSERS = 2;
+
+	/** The default number of pages or indexes each queue between stages holds. */
+	public static final int DEFAULT_CAPACITY = 32;
+
+	/** Tells the threads of a stage to stop. */
+	private static final Page END = new Page(null, null);
+
+	/** Tells the merge thread to stop. */
+	private static final InvertedIndex STOP = new InvertedIndex();
+
+	private final HashSet<URL> allUrl;
+	private final WorkQueue fetchers;
+	private final WritableIndexInterface index;
+	private final int parsers;
+	private final int capacity;
+
+	/** The fetched pages waiting to be parsed. */
+	private final BlockingQueue<Page> pages;
+	/** The indexes of parsed pages waiting to be merged. */
+	private final BlockingQueue<InvertedIndex> merges;
+
+	/** The pages waiting for a fetcher, and the deepest each queue has been. */
+	private final AtomicInteger fetchDepth;
+	private final AtomicInteger fetchPeak;
+	private final AtomicInteger parsePeak;
+	private final AtomicInteger mergePeak;
+
+	/** The pages that are being fetched, parsed or merged. */
+	private final PendingPages pending;
+
+	/**
+	 * Initializes the pipeline with the default number of parse threads and
+	 * queue capacity.
+	 *
+	 * @param fetchers   The work queue that fetches the pages
+	 * @param threadSafe The thread safe index to add the pages to
+	 */
+	public CrawlPipeline(WorkQueue fetchers, WritableIndexInterface threadSafe) {
+		this(fetchers, threadSafe, DEFAULT_PARSERS, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Initializes the pipeline.
+	 *
+	 * @param fetchers   The work queue that fetches the pages
+	 * @param threadSafe The thread safe index to add the pages to
+	 * @param parsers    The number of parse threads
+	 * @param capacity   The most pages or indexes each queue between the stages
+	 *                   holds
+	 */
+	public CrawlPipeline(WorkQueue fetchers, WritableIndexInterface threadSafe, int parsers, int capacity) {
+		this.allUrl = new HashSet<URL>();
+		this.fetchers = fetchers;
+		this.index = threadSafe;
+		this.parsers = Math.max(1, parsers);
+		this.capacity = Math.max(1, capacity);
+		this.pages = new ArrayBlockingQueue<>(this.capacity);
+		this.merges = new ArrayBlockingQueue<>(this.capacity);
+		this.fetchDepth = new AtomicInteger();
+		this.fetchPeak = new AtomicInteger();
+		this.parsePeak = new AtomicInteger();
+		this.mergePeak = new AtomicInteger();
+		this.pending = new PendingPages();
+	}
+
+	/**
+	 * Craw the given seed, and return once every page is in the index.
+	 *
+	 * @param seed  url seed
+	 * @param limit the maximum number of url to craw
+	 */
+	public void craw(URL seed, int limit) {
+		WorkQueue parse = new WorkQueue(parsers);
+		WorkQueue merge = new WorkQueue(1);
+		for (int i = 0; i < parsers; i++) {
+			parse.execute(() -> parse(limit));
+		}
+		merge.execute(this::merge);
+
+		synchronized (allUrl) {
+			allUrl.add(seed);
+		}
+		visit(seed);
+		pending.await();
+		fetchers.finish();
+
+		// every page is done, so the stages only wait for their queues
+		for (int i = 0; i < parsers; i++) {
+			putUninterruptibly(pages, END);
+		}
+		parse.finish();
+		putUninterruptibly(merges, STOP);
+		merge.finish();
+		parse.shutdown();
+		merge.shutdown();
+		// the searches see every page now instead of after the publish delay
+		index.publish();
+	}
+
+	/**
+	 * It will return the number of pages waiting for a fetcher.
+	 *
+	 * @return the depth of the fetch stage
+	 */
+	public int getFetchDepth() {
+		return fetchDepth.get();
+	}
+
+	/**
+	 * It will return the number of fetched pages waiting for a parser.
+	 *
+	 * @return the depth of the parse stage
+	 */
+	public int getParseDepth() {
+		return pages.size();
+	}
+
+	/**
+	 * It will return the number of parsed pages waiting to be merged.
+	 *
+	 * @return the depth of the merge stage
+	 */
+	public int getMergeDepth() {
+		return merges.size();
+	}
+
+	/**
+	 * It will return the most pages that waited for a fetcher at once.
+	 *
+	 * @return the peak depth of the fetch stage
+	 */
+	public int getFetchPeak() {
+		return fetchPeak.get();
+	}
+
+	/**
+	 * It will return the most fetched pages that waited for a parser at once. A
+	 * peak at the capacity means the parsers held back the fetchers.
+	 *
+	 * @return the peak depth of the parse stage
+	 */
+	public int getParsePeak() {
+		return parsePeak.get();
+	}
+
+	/**
+	 * It will return the most parsed pages that waited to be merged at once. A
+	 * peak at the capacity means the merge held back the parsers.
+	 *
+	 * @return the peak depth of the merge stage
+	 */
+	public int getMergePeak() {
+		return mergePeak.get();
+	}
+
+	/**
+	 * Start fetching the page in the fetch stage.
+	 *
+	 * @param url The page to crawl
+	 */
+	private void visit(URL url) {
+		pending.start();
+		fetchPeak.accumulateAndGet(fetchDepth.incrementAndGet(), Math::max);
+		fetchers.execute(() -> fetch(url));
+	}
+
+	/**
+	 * Fetch the page and hand it to the parse stage, waiting while its queue is
+	 * full.
+	 *
+	 * @param url The page to fetch
+	 */
+	private void fetch(URL url) {
+		fetchDepth.decrementAndGet();
+		boolean parsing = false;
+		try {
+			String html = HTMLFetcher.fetchHTML(url, 3);
+			if (html != null) {
+				pages.put(new Page(url, html));
+				parsing = true;
+				parsePeak.accumulateAndGet(pages.size(), Math::max);
+			}
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Unable to read the page: " + url.toString());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			// otherwise the page is done once it is merged
+			if (!parsing) {
+				pending.finish();
+			}
+		}
+	}
+
+	/**
+	 * Parse the fetched pages until the end of the crawl. The words of every page
+	 * go to the merge stage, and its links to the fetch stage.
+	 *
+	 * @param limit the maximum number of url to craw
+	 */
+	private void parse(int limit) {
+		Page page;
+		while ((page = takeUninterruptibly(pages)) != END) {
+			try {
+				InvertedIndex temp = new InvertedIndex();
+				int start = 1;
+				var tokenizer = new TextTokenizer().reset(HTMLCleaner.stripHTML(page.html));
+				while (tokenizer.next()) {
+					temp.add(StemCache.SHARED.stem(tokenizer.token()), page.url.toString(), start++);
+				}
+				addLinks(page, limit);
+				putUninterruptibly(merges, temp);
+				mergePeak.accumulateAndGet(merges.size(), Math::max);
+			} catch (MalformedURLException | RuntimeException e) {
+				System.err.println("Unable to parse the page: " + page.url.toString());
+				pending.finish();
+			}
+		}
+	}
+
+	/**
+	 * Add the index of every parsed page to the shared index until the end of the
+	 * crawl.
+	 */
+	private void merge() {
+		InvertedIndex temp;
+		while ((temp = takeUninterruptibly(merges)) != STOP) {
+			try {
+				index.addAll(temp);
+			} catch (RuntimeException e) {
+				// the merge goes on, or the parsers would wait for it forever
+				System.err.println("Unable to merge a page: " + e.getMessage());
+			} finally {
+				pending.finish();
+			}
+		}
+	}
+
+	/**
+	 * Crawl the links of the page until the limit is reached
+	 *
+	 * @param page  The parsed page
+	 * @param limit the maximum number of url to craw
+	 * @throws MalformedURLException if a link is not a valid url
+	 */
+	private void addLinks(Page page, int limit) throws MalformedURLException {
+		synchronized (allUrl) {
+			if (allUrl.size() >= limit) {
+				return;
+			}
+		}
+		ArrayList<URL> links = LinkParser.listLinks(page.url, page.html);
+		ArrayList<URL> found = new ArrayList<URL>();
+		synchronized (allUrl) {
+			for (URL link : links) {
+				if (allUrl.size() >= limit) {
+					break;
+				} else if (allUrl.add(link)) {
+					found.add(link);
+				}
+			}
+		}
+		// the fetch stage does not block, so a parser never waits for a fetcher
+		for (URL link : found) {
+			visit(link);
+		}
+	}
+
+	/**
+	 * Puts the element in the queue, waiting for room even if interrupted.
+	 *
+	 * @param <E>     the type of the elements
+	 * @param queue   the queue
+	 * @param element the element
+	 */
+	private static <E> void putUninterruptibly(BlockingQueue<E> queue, E element) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(element);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Takes the next element of the queue, waiting for one even if interrupted.
+	 *
+	 * @param <E>   the type of the elements
+	 * @param queue the queue
+	 * @return the element
+	 */
+	private static <E> E takeUninterruptibly(BlockingQueue<E> queue) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return queue.take();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Crawl pipeline: %d parsers, capacity %d, peak depth fetch %d, parse %d, merge %d",
+				parsers, capacity, getFetchPeak(), getParsePeak(), getMergePeak());
+	}
+
+	/**
+	 * A fetched page on its way to the parse stage.
+	 */
+	private static class Page {
+		private final URL url;
+		private final String html;
+
+		/**
+		 * @param url  The address of the page
+		 * @param html The html of the page
+		 */
+		public Page(URL url, String html) {
+			this.url = url;
+			this.html = html;
+		}
+	}
+}
@@ -0,0 +1,95 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Assigns every file path or url a dense integer document id, so the index
+ * can refer to a document with an int instead of repeating its path string.
+ * Ids start at 0 and are given out in the order documents are first seen.
+ */
+public class DocumentDictionary {
+
+	private final HashMap<String, Integer> ids;
+	private final ArrayList<String> paths;
+
+	/**
+	 * Initializes an empty document dictionary.
+	 */
+	public DocumentDictionary() {
+		this.ids = new HashMap<>();
+		this.paths = new ArrayList<>();
+	}
+
+	/**
+	 * Initializes a document dictionary with the same ids as the other one.
+	 *
+	 * @param other The dictionary to copy
+	 */
+	public DocumentDictionary(DocumentDictionary other) {
+		this.ids = new HashMap<>(other.ids);
+		this.paths = new ArrayList<>(other.paths);
+	}
+
+	/**
+	 * Returns the id of the path, giving it the next free id if it has not been
+	 * seen before.
+	 *
+	 * @param path The path or url of the document
+	 * @return the document id
+	 */
+	public int add(String path) {
+		Integer id = ids.get(path);
+		if (id == null) {
+			id = paths.size();
+			ids.put(path, id);
+			paths.add(path);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the id of the path.
+	 *
+	 * @param path The path or url of the document
+	 * @return the document id, or -1 if the path is not in the dictionary
+	 */
+	public int getId(String path) {
+		Integer id = ids.get(path);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the path of the document id.
+	 *
+	 * @param id The document id
+	 * @return the path or url of that document
+	 */
+	public String getPath(int id) {
+		return paths.get(id);
+	}
+
+	/**
+	 * It will return the number of documents in the dictionary.
+	 *
+	 * @return number of documents
+	 */
+	public int size() {
+		return paths.size();
+	}
+
+	/**
+	 * Returns the rank of every document when the documents are sorted by path,
+	 * indexed by document id. Used to write documents in path order.
+	 *
+	 * @return array where the value at a document id is the rank of its path
+	 */
+	public int[] ranks() {
+		String[] sorted = paths.toArray(new String[0]);
+		Arrays.sort(sorted);
+		int[] ranks = new int[sorted.length];
+		for (int rank = 0; rank < sorted.length; rank++) {
+			ranks[ids.get(sorted[rank])] = rank;
+		}
+		return ranks;
+	}
+}
@@ -14,8 +14,8 @@ public class Driver {
 	 * @throws IOException when the file is not exist
 	 */
 	public static void main(String[] args) {
-		InvertedIndex index = null;
-		ThreadSafeInvertedIndex threadSafe = null;
+		WritableIndexInterface index = null;
+		WritableIndexInterface threadSafe = null;
 		ArgumentMap map = new ArgumentMap(args);
 
 		boolean threadCheck = map.hasFlag("-threads");
@@ -26,6 +26,7 @@ public class Driver {
 		boolean checkPort = map.hasFlag("-port");
 		boolean checkUrl = map.hasFlag("-url");
 		WebCrawler crawler = null;
+		CrawlPipeline pipeline = null;
 		
 		if(checkPort)
 		{
@@ -39,17 +40,85 @@ public class Driver {
 		
 		if (threadCheck != true) {
 			index = new InvertedIndex();
-			query = new QueryBuilder(index);
 
 		} else {
 
-			int thread = Integer.parseInt(map.getString("-threads", "5"));
-			queue = new WorkQueue(thread);
-			threadSafe = new ThreadSafeInvertedIndex();
+			int thread = getInteger(map, "-threads", WorkQueue.DEFAULT);
+			if (map.hasFlag("-virtual")) {
+				// every crawl task gets a virtual thread of its own while it waits for its page
+				queue = new WorkQueue(thread, true);
+				if (!queue.isVirtual()) {
+					System.err.println("Virtual threads need Java 21, using " + thread + " threads instead");
+				}
+			} else {
+				queue = new WorkQueue(thread);
+			}
+			if (map.hasFlag("-stripes")) {
+				int stripes = getInteger(map, "-stripes", ConcurrentInvertedIndex.DEFAULT_STRIPES);
+				threadSafe = new ConcurrentInvertedIndex(stripes);
+			} else {
+				// the web server searches published snapshots while a crawl adds pages
+				threadSafe = new ThreadSafeInvertedIndex(checkPort);
+			}
 			index = threadSafe;
-			query = new MultiThreadQueryBuilder(threadSafe, queue);
-			crawler = new WebCrawler(queue, threadSafe);
+			if (map.hasFlag("-pipeline")) {
+				// -pipeline or -pipeline parsers,capacity fetches, parses and merges in stages
+				String[] stages = map.getString("-pipeline",
+						CrawlPipeline.DEFAULT_PARSERS + "," + CrawlPipeline.DEFAULT_CAPACITY).split(",");
+				try {
+					pipeline = new CrawlPipeline(queue, threadSafe, Integer.parseInt(stages[0].trim()),
+							stages.length > 1 ? Integer.parseInt(stages[1].trim()) : CrawlPipeline.DEFAULT_CAPACITY);
+				} catch (NumberFormatException e) {
+					System.err.println("Invalid pipeline stages, using the default ones: " + e.getMessage());
+					pipeline = new CrawlPipeline(queue, threadSafe);
+				}
+				if (map.hasFlag("-async")) {
+					System.err.println("The pipeline fetches in its own stage, -async is not used with -pipeline");
+				}
+			} else if (map.hasFlag("-async")) {
+				// the pages are fetched without blocking the workers, which only parse them
+				crawler = new WebCrawler(queue, threadSafe, new AsyncFetcher(
+						getInteger(map, "-async", AsyncFetcher.DEFAULT_REQUESTS)));
+			} else {
+				crawler = new WebCrawler(queue, threadSafe);
+			}
+
+		}
+
+		if (map.hasFlag("-stemcache")) {
+			StemCache.SHARED.setCapacity(getInteger(map, "-stemcache", StemCache.DEFAULT_CAPACITY));
+		}
+
+		SearchSettings settings = SearchSettings.DEFAULT;
+		if (map.hasFlag("-split") && queue != null) {
+			// a query that stands for at least this many words is searched by every thread
+			settings = settings.withWorkQueue(queue, getInteger(map, "-split", SearchSettings.DEFAULT_SPLIT));
+		}
+
+		if (map.hasFlag("-bm25")) {
+			// -bm25 or -bm25 k1,b ranks the results by BM25 instead of matches by word count
+			String[] parameters = map.getString("-bm25", BM25Model.DEFAULT_K1 + "," + BM25Model.DEFAULT_B).split(",");
+			try {
+				settings = settings.withScoringModel(
+						new BM25Model(Double.parseDouble(parameters[0]), Double.parseDouble(parameters[1])));
+			} catch (RuntimeException e) {
+				System.err.println("Invalid BM25 parameters, using the default ones: " + e.getMessage());
+				settings = settings.withScoringModel(new BM25Model());
+			}
+		}
 
+		boolean building = checkPort || checkUrl || map.hasFlag("-path");
+		FrozenInvertedIndex loaded = null;
+		if (map.hasFlag("-load")) {
+			Path path = map.getPath("-load", Paths.get("index.bin"));
+			try {
+				loaded = FrozenInvertedIndex.load(path);
+				if (building) {
+					index.addAll(loaded);
+				}
+			} catch (IOException e) {
+				System.out.println("Unable to load the index from " + path);
+			}
 		}
 		
 		if (checkUrl)
@@ -68,7 +137,14 @@ public class Driver {
 				return;
 			}
 			
-			crawler.craw(seed, limit);
+			if (pipeline != null) {
+				pipeline.craw(seed, limit);
+				System.err.println(pipeline);
+			} else {
+				crawler.craw(seed, limit);
+			}
+			// the crawl is over, so the kept connections are not needed anymore
+			HttpsFetcher.closeIdle();
 		   
 		   
 		}
@@ -80,7 +156,7 @@ public class Driver {
 				try {
 					if (threadSafe != null) {
 
-						MultiThreadInvertedIndexBuilder.traverse(path, threadSafe, queue);
+						MultiThreadInvertedIndexBuilder.traverse(path, threadSafe, queue, map.hasFlag("-reduce"));
 
 					} else {
 
@@ -95,10 +171,72 @@ public class Driver {
 			}
 		}
 
+		if (map.hasFlag("-segment")) {
+			Path path = map.getPath("-segment", Paths.get("index.seg"));
+			try {
+				// written from the built index, so no frozen copy is needed for it
+				if (loaded != null && !building) {
+					loaded.saveSegment(path);
+				} else {
+					index.saveSegment(path);
+				}
+			} catch (IOException e) {
+				System.out.println("The writer can't write to the file" + path);
+			}
+		}
+
+		FrozenInvertedIndex frozen = null;
+		InvertedIndexInterface searchable = index;
+		if (!checkPort) {
+			// the index is not changed after it is built, so search a frozen copy
+			frozen = (loaded != null && !building) ? loaded : index.freeze();
+			searchable = frozen;
+			// only the frozen copy is used from here on, so the built index can be collected
+			index = null;
+			threadSafe = null;
+			crawler = null;
+			pipeline = null;
+		}
+
+		if (map.hasFlag("-save")) {
+			Path path = map.getPath("-save", Paths.get("index.bin"));
+			try {
+				(frozen != null ? frozen : index.freeze()).save(path);
+			} catch (IOException e) {
+				System.out.println("The writer can't write to the file" + path);
+			}
+		}
+
+		if (map.hasFlag("-mmap")) {
+			Path path = map.getPath("-mmap", Paths.get("index.seg"));
+			try {
+				// search the segment file through a memory mapping instead of the heap
+				searchable = IndexSegment.open(path);
+			} catch (IOException e) {
+				System.out.println("Unable to map the index segment " + path);
+			}
+		}
+
+		// the searches of the query files and the web server score by these settings
+		searchable.setSearchSettings(settings);
+
+		QueryCache cache = null;
+		if (map.hasFlag("-cache")) {
+			// repeated queries from the query files and the web server share results
+			cache = new QueryCache(searchable, getInteger(map, "-cache", QueryCache.DEFAULT_CAPACITY));
+			searchable = cache;
+		}
+
+		if (queue != null) {
+			query = new MultiThreadQueryBuilder(searchable, queue);
+		} else {
+			query = new QueryBuilder(searchable);
+		}
+
 		if (map.hasFlag("-index")) {
 			Path path = map.getPath("-index", Paths.get("index.json"));
 			try {
-				index.toJSON(path);
+				searchable.toJSON(path);
 			} catch (IOException e) {
 				System.out.println("The writer can't write to the file" + path);
 			}
@@ -106,10 +244,11 @@ public class Driver {
 		
 		if(checkPort)
 		{
-			int PORT = Integer.parseInt(map.getString("-port"))	;
+			int PORT = getInteger(map, "-port", SearchServer.DEFAULT_PORT);
+			int pageSize = getInteger(map, "-page", SearchServer.DEFAULT_PAGE_SIZE);
 			try {
 				System.out.print("********");
-				SearchServer.startServer(threadSafe,PORT);
+				SearchServer.startServer(searchable, PORT, pageSize, map.hasFlag("-virtual"));
 			} catch (Exception e) {
 				System.out.println("Web problem");
 			}
@@ -118,7 +257,7 @@ public class Driver {
 		if (map.hasFlag("-locations")) {
 			Path path = map.getPath("-locations", Paths.get("index.json"));
 			try {
-				index.toLocationJSON(path);
+				searchable.toLocationJSON(path);
 			} catch (IOException e) {
 				System.out.println("The writer can't write to the file" + path);
 			}
@@ -128,7 +267,11 @@ public class Driver {
 			Path path = map.getPath("-search");
 			boolean exactCheck = map.hasFlag("-exact");
 			try {
-				query.addSearchResult(path, exactCheck);
+				if (map.hasFlag("-batch")) {
+					query.addBatchSearchResult(path, exactCheck);
+				} else {
+					query.addSearchResult(path, exactCheck);
+				}
 			} catch (FileNotFoundException e) {
 				System.out.println("we can not find the right path for this file " + path);
 			} catch (IOException e) {
@@ -145,9 +288,38 @@ public class Driver {
 			}
 		}
 		
+		// the statistics go to the error stream, apart from the output of the program
+		if (map.hasFlag("-stemcache")) {
+			System.err.println(StemCache.SHARED);
+		}
+
+		if (cache != null) {
+			System.err.println(cache);
+		}
+
 		if (queue != null) {
 			queue.shutdown();
 		}
 	}
 
+	/**
+	 * It will return the number given after the flag, or the default value if the
+	 * flag has no value. A value that is not a number is reported and the default
+	 * value is used instead, like the other flags with parameters.
+	 *
+	 * @param map          The parsed command-line arguments
+	 * @param flag         The flag to read
+	 * @param defaultValue The value used when there is no valid number
+	 * @return the number for the flag
+	 */
+	private static int getInteger(ArgumentMap map, String flag, int defaultValue) {
+		String value = map.getString(flag, String.valueOf(defaultValue));
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid " + flag + " value " + value + ", using the default " + defaultValue);
+			return defaultValue;
+		}
+	}
+
 }
\ No newline at end of file
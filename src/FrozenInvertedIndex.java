@@ -0,0 +1,536 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An immutable, read-optimized copy of an {@link InvertedIndex}, created with
+ * {@link InvertedIndex#freeze()} once the index is built. The words are kept in
+ * a front coded {@link TermDictionary}, and the postings of all words are kept
+ * one after another in flat arrays in the order of the words. Since nothing can change
+ * after it is created, any number of threads can search it without locking.
+ */
+public class FrozenInvertedIndex implements InvertedIndexInterface, PostingsSource {
+
+	/** The first four bytes of a snapshot file. */
+	public static final int SNAPSHOT_MAGIC = 0x52534549;
+
+	/** The snapshot file format version, changed whenever the format changes. */
+	public static final int SNAPSHOT_VERSION = 1;
+
+	/** The buffer size used to read and write snapshot files. */
+	private static final int SNAPSHOT_BUFFER = 1 << 16;
+
+	/** The sorted words, the ordinal of a word is its index in the arrays. */
+	private final TermDictionary words;
+
+	/** The postings of word i are from wordStart[i] until wordStart[i + 1]. */
+	private final int[] wordStart;
+
+	/** The document id of every posting, sorted within each word. */
+	private final int[] documents;
+
+	/** The number of positions of every posting. */
+	private final int[] frequencies;
+
+	/** The positions of posting i are from positionStart[i] until positionStart[i + 1]. */
+	private final int[] positionStart;
+
+	/** The packed positions of every posting, see {@link PositionList}. */
+	private final byte[] positions;
+
+	private final DocumentDictionary dictionary;
+	private final int[] location;
+	/** The word count of every document id divided by the average word count. */
+	private final float[] norms;
+
+	/** The upper bound of the score of each word, or 0 until it is needed. */
+	private final float[] bounds;
+	/** How this index runs its searches. */
+	private volatile SearchSettings settings;
+
+	/**
+	 * Initializes the frozen index with already built arrays. The arrays are used
+	 * as they are and must not be changed afterwards.
+	 *
+	 * @param words         The sorted words
+	 * @param wordStart     Where the postings of every word start
+	 * @param documents     The document id of every posting
+	 * @param frequencies   The number of positions of every posting
+	 * @param positionStart Where the positions of every posting start
+	 * @param positions     The packed positions of every posting
+	 * @param dictionary    The paths of the document ids
+	 * @param location      The word count of every document id
+	 */
+	public FrozenInvertedIndex(TermDictionary words, int[] wordStart, int[] documents, int[] frequencies,
+			int[] positionStart, byte[] positions, DocumentDictionary dictionary, int[] location) {
+		this.words = words;
+		this.wordStart = wordStart;
+		this.documents = documents;
+		this.frequencies = frequencies;
+		this.positionStart = positionStart;
+		this.positions = positions;
+		this.dictionary = dictionary;
+		this.location = location;
+		this.norms = new float[location.length];
+		long total = 0;
+		for (int count : location) {
+			total += count;
+		}
+		for (int document = 0; document < location.length; document++) {
+			norms[document] = total == 0 ? 1 : (float) ((double) location[document] * location.length / total);
+		}
+		this.bounds = new float[words.size()];
+		this.settings = SearchSettings.DEFAULT;
+	}
+
+	/**
+	 * Build a frozen index from the postings of a mutable index. The postings are
+	 * copied, so the mutable index can keep changing afterwards.
+	 *
+	 * @param index     The words and their postings, in word order
+	 * @param documents The paths of the document ids
+	 * @param location  The word count of every document id
+	 * @return the frozen index
+	 */
+	public static FrozenInvertedIndex build(SortedMap<String, PostingList> index, DocumentDictionary documents,
+			int[] location) {
+		int postings = 0;
+		int bytes = 0;
+		for (PostingList list : index.values()) {
+			postings += list.size();
+			for (int i = 0; i < list.size(); i++) {
+				bytes += list.positions(i).byteLength();
+			}
+		}
+
+		int[] wordStart = new int[index.size() + 1];
+		int[] postingDocuments = new int[postings];
+		int[] frequencies = new int[postings];
+		int[] positionStart = new int[postings + 1];
+		byte[] positions = new byte[bytes];
+
+		int word = 0;
+		int posting = 0;
+		for (Map.Entry<String, PostingList> entry : index.entrySet()) {
+			wordStart[word] = posting;
+			PostingList list = entry.getValue();
+			for (int i = 0; i < list.size(); i++) {
+				PositionList positionList = list.positions(i);
+				postingDocuments[posting] = list.document(i);
+				frequencies[posting] = positionList.size();
+				positionList.copyTo(positions, positionStart[posting]);
+				positionStart[posting + 1] = positionStart[posting] + positionList.byteLength();
+				posting++;
+			}
+			word++;
+		}
+		wordStart[word] = posting;
+
+		return new FrozenInvertedIndex(new TermDictionary(index.keySet()), wordStart, postingDocuments, frequencies, positionStart, positions,
+				new DocumentDictionary(documents), Arrays.copyOf(location, documents.size()));
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return words.find(word) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		return posting(word, location) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word, String location, int position) {
+		int posting = posting(word, location);
+		return posting >= 0
+				&& PositionList.contains(positions, positionStart[posting], positionStart[posting + 1], position);
+	}
+
+	/**
+	 * Find the posting of the word in the file.
+	 *
+	 * @param word     Word to look for
+	 * @param location The location of the word in the file
+	 * @return the index of the posting, or -1 if the word is not in that file
+	 */
+	private int posting(String word, String location) {
+		int index = words.find(word);
+		int document = dictionary.getId(location);
+		if (index < 0 || document < 0) {
+			return -1;
+		}
+		int posting = Arrays.binarySearch(documents, wordStart[index], wordStart[index + 1], document);
+		return posting < 0 ? -1 : posting;
+	}
+
+	@Override
+	public ArrayList<Result> exactSearch(TreeSet<String> arrayline) {
+		return QueryEngine.exactSearch(this, arrayline, settings);
+	}
+
+	@Override
+	public ArrayList<Result> partialSearch(TreeSet<String> arrayline) {
+		return QueryEngine.partialSearch(this, arrayline, settings);
+	}
+
+	@Override
+	public ArrayList<Result> search(TreeSet<String> arrayline, boolean exact, int k) {
+		return QueryEngine.search(this, arrayline, exact, k, settings);
+	}
+
+	@Override
+	public ArrayList<Result> search(Query query, boolean exact, int k) {
+		return QueryEngine.search(this, query, exact, k, settings);
+	}
+
+	@Override
+	public ArrayList<ArrayList<Result>> search(List<Query> queries, boolean exact, WorkQueue queue) {
+		return QueryBatch.search(this, queries, exact, queue, settings);
+	}
+
+	/**
+	 * Returns 0, since this index never changes.
+	 */
+	@Override
+	public long getGeneration() {
+		return 0;
+	}
+
+	@Override
+	public SearchSettings getSearchSettings() {
+		return settings;
+	}
+
+	@Override
+	public void setSearchSettings(SearchSettings settings) {
+		this.settings = settings;
+	}
+
+	@Override
+	public void toJSON(Path output) throws IOException {
+		TreeJSONWriter.asDoubleNestedObject(postings(), dictionary, output);
+	}
+
+	@Override
+	public void toLocationJSON(Path output) throws IOException {
+		if (output != null) {
+			TreeMap<String, Integer> counts = new TreeMap<>();
+			for (int document = 0; document < location.length; document++) {
+				counts.put(dictionary.getPath(document), location[document]);
+			}
+			TreeJSONWriter.asObject(counts, output);
+		}
+	}
+
+	/**
+	 * Write this index to a compact binary snapshot file, which can be read back
+	 * with {@link #load(Path)} much faster than building the index again.
+	 * 
+	 * The file starts with {@link #SNAPSHOT_MAGIC} and {@link #SNAPSHOT_VERSION},
+	 * followed by the paths and word counts of the documents, the words, and
+	 * then the flat posting arrays exactly as they are kept in memory.
+	 *
+	 * @param output The path of the snapshot file
+	 * @throws IOException if the writer encounters any issues
+	 */
+	public void save(Path output) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(output), SNAPSHOT_BUFFER))) {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(SNAPSHOT_VERSION);
+
+			out.writeInt(location.length);
+			for (int document = 0; document < location.length; document++) {
+				writeString(out, dictionary.getPath(document));
+				out.writeInt(location[document]);
+			}
+
+			out.writeInt(words.size());
+			for (String word : words) {
+				writeString(out, word);
+			}
+			writeInts(out, wordStart);
+
+			out.writeInt(documents.length);
+			writeInts(out, documents);
+			writeInts(out, frequencies);
+			writeInts(out, positionStart);
+
+			out.writeInt(positions.length);
+			out.write(positions);
+		}
+	}
+
+	/**
+	 * Read an index from a snapshot file written by {@link #save(Path)}.
+	 *
+	 * @param input The path of the snapshot file
+	 * @return the index stored in the file
+	 * @throws IOException if the file can not be read or is not a snapshot
+	 */
+	public static FrozenInvertedIndex load(Path input) throws IOException {
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(input), SNAPSHOT_BUFFER))) {
+			if (in.readInt() != SNAPSHOT_MAGIC) {
+				throw new IOException("Not an index snapshot: " + input);
+			}
+			int version = in.readInt();
+			if (version != SNAPSHOT_VERSION) {
+				throw new IOException("Unsupported index snapshot version " + version + ": " + input);
+			}
+
+			DocumentDictionary dictionary = new DocumentDictionary();
+			int[] location = new int[in.readInt()];
+			for (int document = 0; document < location.length; document++) {
+				dictionary.add(readString(in));
+				location[document] = in.readInt();
+			}
+
+			String[] words = new String[in.readInt()];
+			for (int word = 0; word < words.length; word++) {
+				words[word] = readString(in);
+			}
+			int[] wordStart = readInts(in, words.length + 1);
+
+			int postings = in.readInt();
+			int[] documents = readInts(in, postings);
+			int[] frequencies = readInts(in, postings);
+			int[] positionStart = readInts(in, postings + 1);
+
+			byte[] positions = new byte[in.readInt()];
+			in.readFully(positions);
+
+			return new FrozenInvertedIndex(new TermDictionary(words), wordStart, documents, frequencies,
+					positionStart, positions, dictionary, location);
+		}
+	}
+
+	/**
+	 * Write this index as a segment file that can be searched through a memory
+	 * mapping with {@link IndexSegment#open(Path)}.
+	 *
+	 * @param output The path of the segment file
+	 * @throws IOException if the writer encounters any issues
+	 */
+	public void saveSegment(Path output) throws IOException {
+		IndexSegment.write(this::postings, dictionary, location, output);
+	}
+
+	/**
+	 * Write the string as its UTF-8 length followed by its UTF-8 bytes.
+	 *
+	 * @param out    The stream to write to
+	 * @param string The string to write
+	 * @throws IOException if the writer encounters any issues
+	 */
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Read a string written by {@link #writeString(DataOutputStream, String)}.
+	 *
+	 * @param in The stream to read from
+	 * @return the string
+	 * @throws IOException if the reader encounters any issues
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Write every value of the array.
+	 *
+	 * @param out    The stream to write to
+	 * @param values The values to write
+	 * @throws IOException if the writer encounters any issues
+	 */
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	/**
+	 * Read an array written by {@link #writeInts(DataOutputStream, int[])}.
+	 *
+	 * @param in     The stream to read from
+	 * @param length The number of values to read
+	 * @return the values
+	 * @throws IOException if the reader encounters any issues
+	 */
+	private static int[] readInts(DataInputStream in, int length) throws IOException {
+		int[] values = new int[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = in.readInt();
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the words and their postings in word order.
+	 *
+	 * @return iterator over every word and its postings
+	 */
+	public Iterator<Map.Entry<String, PostingList>> postings() {
+		return new WordIterator();
+	}
+
+	/**
+	 * Returns the dictionary of the document ids used by this index.
+	 *
+	 * @return the document dictionary
+	 */
+	public DocumentDictionary getDocuments() {
+		return dictionary;
+	}
+
+	/**
+	 * Returns the total number of words in the document.
+	 *
+	 * @param document The document id
+	 * @return word count of that document
+	 */
+	public int getWordCount(int document) {
+		return location[document];
+	}
+
+	@Override
+	public float getNorm(int document) {
+		return norms[document];
+	}
+
+	@Override
+	public int getDocumentCount() {
+		return location.length;
+	}
+
+	@Override
+	public String getPath(int document) {
+		return dictionary.getPath(document);
+	}
+
+	@Override
+	public PostingsIterator iterator(String word) {
+		int index = words.find(word);
+		return index < 0 ? null : new Postings(index);
+	}
+
+	@Override
+	public void prefixIterators(String prefix, Collection<PostingsIterator> iterators) {
+		int start = words.prefixStart(prefix);
+		int end = words.prefixEnd(prefix);
+		for (int index = start; index < end; index++) {
+			iterators.add(new Postings(index));
+		}
+	}
+
+	/**
+	 * Returns the highest score the word can add to any document. It is worked
+	 * out the first time the word is searched and rounded up to a float, so two
+	 * threads that race to store it store the same value.
+	 *
+	 * @param index The index of the word
+	 * @return the upper bound of the score of the word
+	 */
+	private double maxScore(int index) {
+		float bound = bounds[index];
+		if (bound == 0) {
+			double max = 0;
+			int end = wordStart[index + 1];
+			for (int posting = wordStart[index]; posting < end; posting++) {
+				max = Math.max(max, (double) frequencies[posting] / location[documents[posting]]);
+			}
+			bound = Math.nextUp((float) max);
+			bounds[index] = bound;
+		}
+		return bound;
+	}
+
+	/**
+	 * Walks the postings of one word in the flat arrays.
+	 */
+	private class Postings extends PostingsIterator {
+		private final int word;
+
+		/**
+		 * Initializes an iterator over the postings of the word.
+		 *
+		 * @param index The index of the word
+		 */
+		public Postings(int index) {
+			super(wordStart[index], wordStart[index + 1]);
+			this.word = index;
+		}
+
+		@Override
+		protected int documentAt(int index) {
+			return documents[index];
+		}
+
+		@Override
+		public double maxScore() {
+			return FrozenInvertedIndex.this.maxScore(word);
+		}
+
+		@Override
+		protected int frequencyAt(int index) {
+			return frequencies[index];
+		}
+
+		@Override
+		protected PrimitiveIterator.OfInt positionsAt(int index) {
+			return PositionList.iterator(positions, positionStart[index], positionStart[index + 1]);
+		}
+	}
+
+	/**
+	 * Goes through the words in order and creates a {@link PostingList} of each
+	 * word only when it is reached, so the whole index is never copied at once.
+	 */
+	private class WordIterator implements Iterator<Map.Entry<String, PostingList>> {
+		private final Iterator<String> names = words.iterator();
+		private int index = 0;
+
+		@Override
+		public boolean hasNext() {
+			return names.hasNext();
+		}
+
+		@Override
+		public Map.Entry<String, PostingList> next() {
+			String word = names.next();
+			int start = wordStart[index];
+			int end = wordStart[index + 1];
+			PositionList[] lists = new PositionList[end - start];
+			for (int posting = start; posting < end; posting++) {
+				lists[posting - start] = new PositionList(positions, positionStart[posting],
+						positionStart[posting + 1]);
+			}
+			PostingList postings = new PostingList(Arrays.copyOfRange(documents, start, end), lists);
+			index++;
+			return new AbstractMap.SimpleImmutableEntry<>(word, postings);
+		}
+	}
+}
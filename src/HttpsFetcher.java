@@ -1,21 +1,51 @@
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.Socket;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import javax.net.SocketFactory;
 import javax.net.ssl.SSLSocketFactory;
 
+/**
+ * Fetches pages over HTTP/1.1 with persistent connections. After a response
+ * has been read to its end, which is found from its Content-Length or its
+ * chunks, the connection is kept open for the next request to the same host,
+ * so the TCP and TLS handshakes are only paid once per host instead of once
+ * per page. Every TLS socket comes from the same factory, whose session cache
+ * lets a new connection to a host resume the TLS session of an older one.
+ */
 public class HttpsFetcher {
 
+	/** The most idle connections kept open for one host. */
+	private static final int MAX_IDLE = 4;
+
+	/** How long an idle connection is kept, in milliseconds. */
+	private static final long IDLE_TIMEOUT = 15_000;
+
+	/** How long to wait for a response before giving up, in milliseconds. */
+	private static final int READ_TIMEOUT = 30_000;
+
+	/** The factory of every TLS socket, so they share one session cache. */
+	private static final SocketFactory TLS = SSLSocketFactory.getDefault();
+
+	/** The idle connections of every host, most recently used first. */
+	private static final ConcurrentHashMap<String, ArrayDeque<Connection>> IDLE = new ConcurrentHashMap<>();
+
 	/***
 	 * Fetches the headers and content for the specified URL. The content is
 	 * placed as a list of all the lines fetched under the "Content" key.
@@ -25,10 +55,6 @@ public class HttpsFetcher {
 	 * @throws IOException if unable to fetch headers and content
 	 */
 	public static Map<String, List<String>> fetchURL(URL url) throws IOException {
-		// used to store all headers and content
-		// use the same data structure as URLConnection.getHeaderFields()
-		Map<String, List<String>> results = new HashMap<>();
-
 		String protocol = url.getProtocol();
 		String host = url.getHost();
 		String resource = url.getFile().isEmpty() ? "/" : url.getFile();
@@ -37,68 +63,303 @@ public class HttpsFetcher {
 		boolean https = (protocol != null) && protocol.equalsIgnoreCase("https");
 		int defaultPort = https ? 443 : 80;
 		int port = url.getPort() < 0 ? defaultPort : url.getPort();
+		String key = (https ? "https://" : "http://") + host + ":" + port;
 
-		try (
-				// open up a network socket to the webserver
-				Socket socket = https ?
-						SSLSocketFactory.getDefault().createSocket(host, port) :
-						SocketFactory.getDefault().createSocket(host, port);
+		Connection connection = take(key);
+		if (connection != null) {
+			try {
+				return fetch(connection, key, host, resource);
+			} catch (IOException e) {
+				// the server closed the idle connection, so try once more on a new one
+			}
+		}
+		return fetch(new Connection(https ? TLS.createSocket(host, port) : SocketFactory.getDefault().createSocket(host, port)),
+				key, host, resource);
+	}
+
+	/**
+	 * See {@link #fetchURL(URL)} for details.
+	 *
+	 * @throws MalformedURLException if unable to convert String to URL
+	 * @see #fetchURL(URL)
+	 */
+	public static Map<String, List<String>> fetchURL(String url) throws MalformedURLException, IOException {
+		return fetchURL(new URL(url));
+	}
+
+	/**
+	 * Close every idle connection.
+	 */
+	public static void closeIdle() {
+		for (ArrayDeque<Connection> connections : IDLE.values()) {
+			synchronized (connections) {
+				for (Connection connection : connections) {
+					connection.close();
+				}
+				connections.clear();
+			}
+		}
+	}
 
-				// create a writer for the request
-				PrintWriter request = new PrintWriter(socket.getOutputStream());
+	/**
+	 * Sends the request on the connection and reads the response. The connection
+	 * is given back to the pool if the response allows it, and closed otherwise.
+	 *
+	 * @param connection the connection to the host
+	 * @param key        the key of the host in the pool
+	 * @param host       the host name
+	 * @param resource   the path and query of the page
+	 * @return a map with the headers and content
+	 * @throws IOException if unable to fetch headers and content
+	 */
+	private static Map<String, List<String>> fetch(Connection connection, String key, String host, String resource)
+			throws IOException {
+		boolean reuse = false;
+		try {
+			// use the same data structure as URLConnection.getHeaderFields()
+			Map<String, List<String>> results = new HashMap<>();
 
-				// create a reader for the response
-				InputStreamReader input = new InputStreamReader(socket.getInputStream());
-				BufferedReader response = new BufferedReader(input);
-		) {
 			// write request to socket
-			request.printf("GET %s HTTP/1.1\r\n", resource);
-			request.printf("Host: %s\r\n", host);
-			request.printf("Connection: close\r\n");
-			request.printf("\r\n");
-			request.flush();
+			String request = String.format("GET %s HTTP/1.1\r\nHost: %s\r\nConnection: keep-alive\r\n\r\n", resource,
+					host);
+			connection.output.write(request.getBytes(StandardCharsets.ISO_8859_1));
+			connection.output.flush();
 
 			// fetch status line from server
-			String line = response.readLine();
+			String line = readLine(connection.input);
+			if (line == null) {
+				throw new EOFException("Connection closed before the response");
+			}
 
 			// add status line in same way as URLConnection.getHeaderFields()
 			results.put(null, Arrays.asList(line));
 
 			// process remaining headers
-			while ((line = response.readLine()) != null) {
+			while ((line = readLine(connection.input)) != null) {
 				// detect empty line between headers and content
 				if (line.trim().isEmpty()) {
 					break;
 				}
 
 				String[] split = line.split(":\\s+", 2);
-				assert split.length == 2;
+				if (split.length < 2) {
+					continue;
+				}
 
 				// handle cases where header appears more than once
 				results.putIfAbsent(split[0], new ArrayList<>());
 				results.get(split[0]).add(split[1]);
 			}
 
-			// process remaining content
-			List<String> lines = new ArrayList<>();
-			while ((line = response.readLine()) != null) {
-				lines.add(line);
+			// process remaining content, framed by its length or chunks if it has them
+			String status = results.get(null).get(0);
+			String length = header(results, "Content-Length");
+			String encoding = header(results, "Transfer-Encoding");
+			String close = header(results, "Connection");
+			boolean persistent = status.startsWith("HTTP/1.1") ? !"close".equalsIgnoreCase(close)
+					: "keep-alive".equalsIgnoreCase(close);
+			int code = HTMLFetcher.getStatusCode(results);
+
+			byte[] body;
+			if ((code >= 100 && code < 200) || code == 204 || code == 304) {
+				body = new byte[0];
+				reuse = persistent;
+			} else if (encoding != null && encoding.toLowerCase().contains("chunked")) {
+				body = readChunks(connection.input);
+				reuse = persistent;
+			} else if (length != null) {
+				body = readFully(connection.input, Long.parseLong(length.trim()));
+				reuse = persistent;
+			} else {
+				body = connection.input.readAllBytes();
 			}
 
-			results.put("Content", lines);
+			// the same lines a reader of the default charset would read
+			results.put("Content", new String(body, Charset.defaultCharset()).lines().collect(Collectors.toList()));
+			return results;
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid Content-Length", e);
+		} finally {
+			if (reuse) {
+				give(key, connection);
+			} else {
+				connection.close();
+			}
 		}
+	}
 
-		return results;
+	/**
+	 * Returns the first value of a header, whatever the case of its name.
+	 *
+	 * @param headers the headers
+	 * @param name    the name of the header
+	 * @return the value, or null if there is none
+	 */
+	private static String header(Map<String, List<String>> headers, String name) {
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+				return entry.getValue().get(0);
+			}
+		}
+		return null;
 	}
 
 	/**
-	 * See {@link #fetchURL(URL)} for details.
+	 * Reads one line of the headers, without the line break.
 	 *
-	 * @throws MalformedURLException if unable to convert String to URL
-	 * @see #fetchURL(URL)
+	 * @param input the stream to read
+	 * @return the line, or null at the end of the stream
+	 * @throws IOException if unable to read
 	 */
-	public static Map<String, List<String>> fetchURL(String url) throws MalformedURLException, IOException {
-		return fetchURL(new URL(url));
+	private static String readLine(InputStream input) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+		int next;
+		while ((next = input.read()) != -1) {
+			if (next == '\n') {
+				break;
+			}
+			line.write(next);
+		}
+		if (next == -1 && line.size() == 0) {
+			return null;
+		}
+		String text = line.toString(StandardCharsets.ISO_8859_1);
+		return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+	}
+
+	/**
+	 * Reads exactly the given number of bytes.
+	 *
+	 * @param input  the stream to read
+	 * @param length the number of bytes
+	 * @return the bytes
+	 * @throws IOException if the stream ends first
+	 */
+	private static byte[] readFully(InputStream input, long length) throws IOException {
+		if (length < 0 || length > Integer.MAX_VALUE - 8) {
+			throw new IOException("Invalid Content-Length " + length);
+		}
+		byte[] bytes = input.readNBytes((int) length);
+		if (bytes.length < length) {
+			throw new EOFException("Connection closed before the end of the content");
+		}
+		return bytes;
 	}
 
+	/**
+	 * Reads a chunked body and the trailer after it.
+	 *
+	 * @param input the stream to read
+	 * @return the bytes of all the chunks
+	 * @throws IOException if unable to read or the chunks are not valid
+	 */
+	private static byte[] readChunks(InputStream input) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		while (true) {
+			String line = readLine(input);
+			if (line == null) {
+				throw new EOFException("Connection closed before the last chunk");
+			}
+			int extension = line.indexOf(';');
+			long size;
+			try {
+				size = Long.parseLong((extension < 0 ? line : line.substring(0, extension)).trim(), 16);
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid chunk size " + line, e);
+			}
+			if (size == 0) {
+				break;
+			}
+			body.write(readFully(input, size));
+			readLine(input);
+		}
+		// skip the trailer up to the empty line
+		String line;
+		while ((line = readLine(input)) != null && !line.isEmpty()) {
+			continue;
+		}
+		return body.toByteArray();
+	}
+
+	/**
+	 * Returns an idle connection to the host that is still fresh, or null.
+	 *
+	 * @param key the key of the host
+	 * @return the connection, or null if there is none
+	 */
+	private static Connection take(String key) {
+		ArrayDeque<Connection> connections = IDLE.get(key);
+		if (connections == null) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		synchronized (connections) {
+			Connection connection;
+			while ((connection = connections.pollFirst()) != null) {
+				if (now - connection.idleSince < IDLE_TIMEOUT && !connection.socket.isClosed()) {
+					return connection;
+				}
+				connection.close();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Keep the connection for the next request to the host, or close it if there
+	 * are enough idle connections already.
+	 *
+	 * @param key        the key of the host
+	 * @param connection the connection
+	 */
+	private static void give(String key, Connection connection) {
+		ArrayDeque<Connection> connections = IDLE.computeIfAbsent(key, k -> new ArrayDeque<>());
+		connection.idleSince = System.currentTimeMillis();
+		synchronized (connections) {
+			if (connections.size() < MAX_IDLE) {
+				connections.addFirst(connection);
+				return;
+			}
+		}
+		connection.close();
+	}
+
+	/**
+	 * An open connection to a host.
+	 */
+	private static class Connection {
+		private final Socket socket;
+		private final InputStream input;
+		private final OutputStream output;
+		private long idleSince;
+
+		/**
+		 * Initializes the connection.
+		 *
+		 * @param socket the connected socket
+		 * @throws IOException if unable to open its streams
+		 */
+		public Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			try {
+				socket.setSoTimeout(READ_TIMEOUT);
+				this.input = new BufferedInputStream(socket.getInputStream());
+				this.output = socket.getOutputStream();
+			} catch (IOException e) {
+				socket.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Close the socket, ignoring any issue.
+		 */
+		public void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// nothing left to do with it
+			}
+		}
+	}
 }
@@ -0,0 +1,963 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * An index segment file that is searched through a memory mapping instead of
+ * being read onto the heap. The operating system page cache keeps the parts of
+ * the file that are used often in memory, so an index bigger than the heap can
+ * still be searched, and several programs can share one copy of the index.
+ *
+ * A segment is written straight from the postings of an index with
+ * {@link #write(Supplier, DocumentDictionary, int[], Path)}, for example by
+ * {@link InvertedIndex#saveSegment(Path)}, and opened with {@link #open(Path)}.
+ * The file has a fixed size header followed by four sections. Every offset
+ * into a section is a long and every section is mapped in chunks of 1GB, so a
+ * section can be bigger than 2GB:
+ *
+ * <pre>
+ * documents: int[documents] word counts, float[documents] norms,
+ *            long[documents + 1] path starts, int[documents] ids sorted by path,
+ *            UTF-8 paths
+ * words:     int[words + 1] posting starts, float[words] score bounds,
+ *            long[words + 1] text starts, UTF-8 words in sorted order
+ * postings:  int[postings] document ids, int[postings] frequencies,
+ *            long[postings + 1] position starts
+ * positions: packed positions, see {@link PositionList}
+ * </pre>
+ */
+public class IndexSegment implements InvertedIndexInterface, PostingsSource {
+
+	/** The first four bytes of a segment file. */
+	public static final int SEGMENT_MAGIC = 0x52534547;
+
+	/** The segment file format version, changed whenever the format changes. */
+	public static final int SEGMENT_VERSION = 2;
+
+	/** The size of the header: five ints and an offset and length for each of the four sections. */
+	private static final int HEADER_SIZE = 5 * Integer.BYTES + 4 * 2 * Long.BYTES;
+
+	/** The size of the buffer of every part of the file being written. */
+	private static final int WRITE_BUFFER = 1 << 16;
+
+	private final int documentCount;
+	private final int wordCount;
+
+	private final Section documentSection;
+	private final long normsAt;
+	private final long pathStartAt;
+	private final long pathOrderAt;
+	private final long pathsAt;
+
+	private final Section wordSection;
+	private final long boundsAt;
+	private final long textStartAt;
+	private final long textAt;
+
+	private final Section postingSection;
+	private final long frequenciesAt;
+	private final long positionStartAt;
+
+	private final Section positions;
+	/** How this index runs its searches. */
+	private volatile SearchSettings settings;
+
+	/**
+	 * Initializes the segment from the mapped sections of the file.
+	 *
+	 * @param header          The header of the file
+	 * @param documentSection The mapped documents section
+	 * @param wordSection     The mapped words section
+	 * @param postingSection  The mapped postings section
+	 * @param positionSection The mapped positions section
+	 */
+	private IndexSegment(ByteBuffer header, Section documentSection, Section wordSection, Section postingSection,
+			Section positionSection) {
+		this.documentCount = header.getInt(2 * Integer.BYTES);
+		this.wordCount = header.getInt(3 * Integer.BYTES);
+		long postingCount = header.getInt(4 * Integer.BYTES);
+
+		this.documentSection = documentSection;
+		this.normsAt = (long) documentCount * Integer.BYTES;
+		this.pathStartAt = normsAt + (long) documentCount * Float.BYTES;
+		this.pathOrderAt = pathStartAt + (documentCount + 1L) * Long.BYTES;
+		this.pathsAt = pathOrderAt + (long) documentCount * Integer.BYTES;
+
+		this.wordSection = wordSection;
+		this.boundsAt = (wordCount + 1L) * Integer.BYTES;
+		this.textStartAt = boundsAt + (long) wordCount * Float.BYTES;
+		this.textAt = textStartAt + (wordCount + 1L) * Long.BYTES;
+
+		this.postingSection = postingSection;
+		this.frequenciesAt = postingCount * Integer.BYTES;
+		this.positionStartAt = frequenciesAt + postingCount * Integer.BYTES;
+
+		this.positions = positionSection;
+		this.settings = SearchSettings.DEFAULT;
+	}
+
+	/**
+	 * Map a segment file written by {@link #write} into memory. Nothing but the
+	 * header is read until the segment is searched.
+	 *
+	 * @param input The path of the segment file
+	 * @return the segment
+	 * @throws IOException if the file can not be read or is not a segment
+	 */
+	public static IndexSegment open(Path input) throws IOException {
+		try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException("Not an index segment: " + input);
+			}
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt(0) != SEGMENT_MAGIC) {
+				throw new IOException("Not an index segment: " + input);
+			}
+			int version = header.getInt(Integer.BYTES);
+			if (version != SEGMENT_VERSION) {
+				throw new IOException("Unsupported index segment version " + version + ": " + input);
+			}
+
+			Section[] sections = new Section[4];
+			for (int i = 0; i < sections.length; i++) {
+				long offset = header.getLong(5 * Integer.BYTES + i * 2 * Long.BYTES);
+				long length = header.getLong(5 * Integer.BYTES + i * 2 * Long.BYTES + Long.BYTES);
+				if (offset < HEADER_SIZE || length < 0 || offset + length > channel.size()) {
+					throw new IOException("Broken index segment: " + input);
+				}
+				sections[i] = new Section(channel, offset, length);
+			}
+
+			// the mapping stays valid after the channel is closed
+			return new IndexSegment(header, sections[0], sections[1], sections[2], sections[3]);
+		}
+	}
+
+	/**
+	 * Write the postings of an index as a segment file. The postings are read
+	 * twice, once to find the size of every section and once to write them, and
+	 * only the postings of one word are held at a time, so the index does not
+	 * need to be copied first. The index must not change while it is written.
+	 *
+	 * @param postings   Gives an iterator over the words and their postings in word
+	 *                   order, every time it is called
+	 * @param dictionary The paths of the document ids
+	 * @param location   The word count of every document id
+	 * @param output     The path of the segment file
+	 * @throws IOException if the writer encounters any issues
+	 */
+	public static void write(Supplier<Iterator<Map.Entry<String, PostingList>>> postings,
+			DocumentDictionary dictionary, int[] location, Path output) throws IOException {
+		int count = dictionary.size();
+
+		// the sizes of the sections
+		long wordTotal = 0;
+		long postingTotal = 0;
+		long textBytes = 0;
+		long positionBytes = 0;
+		for (Iterator<Map.Entry<String, PostingList>> words = postings.get(); words.hasNext();) {
+			Map.Entry<String, PostingList> entry = words.next();
+			PostingList list = entry.getValue();
+			wordTotal++;
+			postingTotal += list.size();
+			textBytes += entry.getKey().getBytes(StandardCharsets.UTF_8).length;
+			for (int i = 0; i < list.size(); i++) {
+				positionBytes += list.positions(i).byteLength();
+			}
+		}
+		if (wordTotal >= Integer.MAX_VALUE || postingTotal >= Integer.MAX_VALUE) {
+			throw new IOException("Too many words or postings for one index segment: " + output);
+		}
+		int words = (int) wordTotal;
+		int postingCount = (int) postingTotal;
+
+		byte[][] pathBytes = new byte[count][];
+		long pathTotal = 0;
+		for (int document = 0; document < count; document++) {
+			pathBytes[document] = dictionary.getPath(document).getBytes(StandardCharsets.UTF_8);
+			pathTotal += pathBytes[document].length;
+		}
+
+		long documentLength = (long) count * (Integer.BYTES + Float.BYTES + Integer.BYTES)
+				+ (count + 1L) * Long.BYTES + pathTotal;
+		long wordLength = (words + 1L) * Integer.BYTES + (long) words * Float.BYTES + (words + 1L) * Long.BYTES
+				+ textBytes;
+		long postingLength = (long) postingCount * 2 * Integer.BYTES + (postingCount + 1L) * Long.BYTES;
+		long[] sections = new long[8];
+		sections[0] = HEADER_SIZE;
+		sections[1] = documentLength;
+		sections[2] = sections[0] + documentLength;
+		sections[3] = wordLength;
+		sections[4] = sections[2] + wordLength;
+		sections[5] = postingLength;
+		sections[6] = sections[4] + postingLength;
+		sections[7] = positionBytes;
+
+		try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			// documents
+			long total = 0;
+			for (int document = 0; document < count; document++) {
+				total += location[document];
+			}
+			SectionWriter out = new SectionWriter(channel, sections[0]);
+			for (int document = 0; document < count; document++) {
+				out.putInt(location[document]);
+			}
+			for (int document = 0; document < count; document++) {
+				out.putFloat(total == 0 ? 1 : (float) ((double) location[document] * count / total));
+			}
+			long start = 0;
+			for (byte[] path : pathBytes) {
+				out.putLong(start);
+				start += path.length;
+			}
+			out.putLong(start);
+			for (int document : sortedByPath(dictionary, count)) {
+				out.putInt(document);
+			}
+			for (byte[] path : pathBytes) {
+				out.put(path, 0, path.length);
+			}
+			out.flush();
+
+			// words, postings and positions, each part written at its own offset
+			long boundsAt = sections[2] + (words + 1L) * Integer.BYTES;
+			long textStartAt = boundsAt + (long) words * Float.BYTES;
+			long frequenciesAt = sections[4] + (long) postingCount * Integer.BYTES;
+			long positionStartAt = frequenciesAt + (long) postingCount * Integer.BYTES;
+			SectionWriter wordStart = new SectionWriter(channel, sections[2]);
+			SectionWriter bounds = new SectionWriter(channel, boundsAt);
+			SectionWriter textStart = new SectionWriter(channel, textStartAt);
+			SectionWriter text = new SectionWriter(channel, textStartAt + (words + 1L) * Long.BYTES);
+			SectionWriter documents = new SectionWriter(channel, sections[4]);
+			SectionWriter frequencies = new SectionWriter(channel, frequenciesAt);
+			SectionWriter positionStart = new SectionWriter(channel, positionStartAt);
+			SectionWriter positions = new SectionWriter(channel, sections[6]);
+
+			int posting = 0;
+			long textOffset = 0;
+			long positionOffset = 0;
+			byte[] block = new byte[64];
+			for (Iterator<Map.Entry<String, PostingList>> iterator = postings.get(); iterator.hasNext();) {
+				Map.Entry<String, PostingList> entry = iterator.next();
+				byte[] word = entry.getKey().getBytes(StandardCharsets.UTF_8);
+				wordStart.putInt(posting);
+				textStart.putLong(textOffset);
+				text.put(word, 0, word.length);
+				textOffset += word.length;
+
+				PostingList list = entry.getValue();
+				double max = 0;
+				for (int i = 0; i < list.size(); i++) {
+					PositionList positionList = list.positions(i);
+					int document = list.document(i);
+					int length = positionList.byteLength();
+					if (block.length < length) {
+						block = new byte[Math.max(length, block.length * 2)];
+					}
+					positionList.copyTo(block, 0);
+					documents.putInt(document);
+					frequencies.putInt(positionList.size());
+					positionStart.putLong(positionOffset);
+					positions.put(block, 0, length);
+					positionOffset += length;
+					max = Math.max(max, (double) positionList.size() / location[document]);
+					posting++;
+				}
+				bounds.putFloat(Math.nextUp((float) max));
+			}
+			if (posting != postingCount || textOffset != textBytes || positionOffset != positionBytes) {
+				throw new IOException("The index changed while it was written: " + output);
+			}
+			wordStart.putInt(posting);
+			textStart.putLong(textOffset);
+			positionStart.putLong(positionOffset);
+			for (SectionWriter part : new SectionWriter[] { wordStart, bounds, textStart, text, documents,
+					frequencies, positionStart, positions }) {
+				part.flush();
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(SEGMENT_MAGIC);
+			header.putInt(SEGMENT_VERSION);
+			header.putInt(count);
+			header.putInt(words);
+			header.putInt(postingCount);
+			for (long value : sections) {
+				header.putLong(value);
+			}
+			header.flip();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+		}
+	}
+
+	/**
+	 * Returns the document ids sorted by their paths.
+	 *
+	 * @param dictionary The paths of the document ids
+	 * @param count      The number of documents
+	 * @return document ids in path order
+	 */
+	private static int[] sortedByPath(DocumentDictionary dictionary, int count) {
+		int[] ranks = dictionary.ranks();
+		int[] order = new int[count];
+		for (int document = 0; document < count; document++) {
+			order[ranks[document]] = document;
+		}
+		return order;
+	}
+
+	/**
+	 * Compare UTF-8 text stored in a buffer to a string, in the same order as
+	 * {@link String#compareTo(String)}. The text is decoded one character at a
+	 * time, so no string is created.
+	 *
+	 * @param buffer The buffer holding the text
+	 * @param start  The offset of the first byte of the text
+	 * @param end    The offset after the last byte of the text
+	 * @param key    The string to compare to
+	 * @param prefix If true, text that starts with the key counts as equal
+	 * @return negative, zero or positive if the text is smaller, equal or bigger
+	 */
+	private static int compare(ByteBuffer buffer, int start, int end, String key, boolean prefix) {
+		int offset = start;
+		int index = 0;
+		char low = 0;
+		while (offset < end || low != 0) {
+			char current;
+			if (low != 0) {
+				current = low;
+				low = 0;
+			} else {
+				int b = buffer.get(offset++) & 0xFF;
+				int codePoint;
+				if (b < 0x80) {
+					codePoint = b;
+				} else if (b < 0xE0) {
+					codePoint = ((b & 0x1F) << 6) | (buffer.get(offset++) & 0x3F);
+				} else if (b < 0xF0) {
+					codePoint = ((b & 0x0F) << 12) | ((buffer.get(offset++) & 0x3F) << 6)
+							| (buffer.get(offset++) & 0x3F);
+				} else {
+					codePoint = ((b & 0x07) << 18) | ((buffer.get(offset++) & 0x3F) << 12)
+							| ((buffer.get(offset++) & 0x3F) << 6) | (buffer.get(offset++) & 0x3F);
+				}
+				if (Character.isSupplementaryCodePoint(codePoint)) {
+					current = Character.highSurrogate(codePoint);
+					low = Character.lowSurrogate(codePoint);
+				} else {
+					current = (char) codePoint;
+				}
+			}
+
+			if (index == key.length()) {
+				return prefix ? 0 : 1;
+			}
+			int result = Character.compare(current, key.charAt(index++));
+			if (result != 0) {
+				return result;
+			}
+		}
+		return index == key.length() ? 0 : -1;
+	}
+
+	/**
+	 * Compare UTF-8 text stored in a section to a string.
+	 *
+	 * @param section The section holding the text
+	 * @param start   The offset of the first byte of the text
+	 * @param end     The offset after the last byte of the text
+	 * @param key     The string to compare to
+	 * @param prefix  If true, text that starts with the key counts as equal
+	 * @return negative, zero or positive if the text is smaller, equal or bigger
+	 * @see #compare(ByteBuffer, int, int, String, boolean)
+	 */
+	private static int compare(Section section, long start, long end, String key, boolean prefix) {
+		return compare(section.view(start, end), 0, (int) (end - start), key, prefix);
+	}
+
+	/**
+	 * Decode UTF-8 text stored in a section.
+	 *
+	 * @param section The section holding the text
+	 * @param start   The offset of the first byte of the text
+	 * @param end     The offset after the last byte of the text
+	 * @return the text
+	 */
+	private static String decode(Section section, long start, long end) {
+		return new String(section.bytes(start, end), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns where the text of the word starts in the words section.
+	 *
+	 * @param index The index of the word, or the word count for the end of the last
+	 * @return the offset of the text
+	 */
+	private long textStart(int index) {
+		return textAt + wordSection.getLong(textStartAt + (long) index * Long.BYTES);
+	}
+
+	/**
+	 * Returns the index of the first posting of the word.
+	 *
+	 * @param index The index of the word, or the word count for the end of the last
+	 * @return the index of the posting
+	 */
+	private int wordStart(int index) {
+		return wordSection.getInt((long) index * Integer.BYTES);
+	}
+
+	/**
+	 * Returns where the path of the document starts in the documents section.
+	 *
+	 * @param document The document id, or the document count for the end of the
+	 *                 last
+	 * @return the offset of the path
+	 */
+	private long pathStart(int document) {
+		return pathsAt + documentSection.getLong(pathStartAt + (long) document * Long.BYTES);
+	}
+
+	/**
+	 * Returns where the positions of the posting start in the positions section.
+	 *
+	 * @param posting The index of the posting, or the posting count for the end of
+	 *                the last
+	 * @return the offset of the positions
+	 */
+	private long positionStart(int posting) {
+		return postingSection.getLong(positionStartAt + (long) posting * Long.BYTES);
+	}
+
+	/**
+	 * Returns the document id of the posting.
+	 *
+	 * @param posting The index of the posting
+	 * @return the document id
+	 */
+	private int documentAt(int posting) {
+		return postingSection.getInt((long) posting * Integer.BYTES);
+	}
+
+	/**
+	 * Returns the frequency of the posting.
+	 *
+	 * @param posting The index of the posting
+	 * @return the number of positions
+	 */
+	private int frequencyAt(int posting) {
+		return postingSection.getInt(frequenciesAt + (long) posting * Integer.BYTES);
+	}
+
+	/**
+	 * Binary search the words.
+	 *
+	 * @param word   The word to look for
+	 * @param prefix If true, find the first word that is not smaller than the word
+	 * @return the index of the word, or -1 if it is not there and prefix is false
+	 */
+	private int findWord(String word, boolean prefix) {
+		int low = 0;
+		int high = wordCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			int result = compare(wordSection, textStart(middle), textStart(middle + 1), word, false);
+			if (result < 0) {
+				low = middle + 1;
+			} else if (result > 0 || prefix) {
+				high = middle;
+			} else {
+				return middle;
+			}
+		}
+		return prefix ? low : -1;
+	}
+
+	/**
+	 * Returns the index after the last word starting with the prefix.
+	 *
+	 * @param prefix The prefix to look for
+	 * @param start  The index of the first word starting with the prefix
+	 * @return index after the last word starting with the prefix
+	 */
+	private int prefixEnd(String prefix, int start) {
+		int low = start;
+		int high = wordCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (compare(wordSection, textStart(middle), textStart(middle + 1), prefix, true) == 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Binary search the document paths.
+	 *
+	 * @param location The path to look for
+	 * @return the document id, or -1 if there is no such document
+	 */
+	private int findDocument(String location) {
+		int low = 0;
+		int high = documentCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int document = documentSection.getInt(pathOrderAt + (long) middle * Integer.BYTES);
+			int result = compare(documentSection, pathStart(document), pathStart(document + 1), location, false);
+			if (result < 0) {
+				low = middle + 1;
+			} else if (result > 0) {
+				high = middle - 1;
+			} else {
+				return document;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the path of the document id.
+	 *
+	 * @param document The document id
+	 * @return the path or url of that document
+	 */
+	@Override
+	public String getPath(int document) {
+		return decode(documentSection, pathStart(document), pathStart(document + 1));
+	}
+
+	/**
+	 * Find the posting of the word in the file.
+	 *
+	 * @param word     Word to look for
+	 * @param location The location of the word in the file
+	 * @return the index of the posting, or -1 if the word is not in that file
+	 */
+	private int posting(String word, String location) {
+		int index = findWord(word, false);
+		int document = findDocument(location);
+		if (index < 0 || document < 0) {
+			return -1;
+		}
+		int low = wordStart(index);
+		int high = wordStart(index + 1) - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int current = documentAt(middle);
+			if (current < document) {
+				low = middle + 1;
+			} else if (current > document) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return findWord(word, false) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		return posting(word, location) >= 0;
+	}
+
+	@Override
+	public boolean contains(String word, String location, int position) {
+		int posting = posting(word, location);
+		if (posting < 0) {
+			return false;
+		}
+		byte[] block = positions.bytes(positionStart(posting), positionStart(posting + 1));
+		return PositionList.contains(block, 0, block.length, position);
+	}
+
+	@Override
+	public ArrayList<Result> exactSearch(TreeSet<String> arrayline) {
+		return QueryEngine.exactSearch(this, arrayline, settings);
+	}
+
+	@Override
+	public ArrayList<Result> partialSearch(TreeSet<String> arrayline) {
+		return QueryEngine.partialSearch(this, arrayline, settings);
+	}
+
+	@Override
+	public ArrayList<Result> search(TreeSet<String> arrayline, boolean exact, int k) {
+		return QueryEngine.search(this, arrayline, exact, k, settings);
+	}
+
+	@Override
+	public ArrayList<Result> search(Query query, boolean exact, int k) {
+		return QueryEngine.search(this, query, exact, k, settings);
+	}
+
+	@Override
+	public ArrayList<ArrayList<Result>> search(List<Query> queries, boolean exact, WorkQueue queue) {
+		return QueryBatch.search(this, queries, exact, queue, settings);
+	}
+
+	/**
+	 * Returns 0, since this index never changes.
+	 */
+	@Override
+	public long getGeneration() {
+		return 0;
+	}
+
+	@Override
+	public SearchSettings getSearchSettings() {
+		return settings;
+	}
+
+	@Override
+	public void setSearchSettings(SearchSettings settings) {
+		this.settings = settings;
+	}
+
+	@Override
+	public int getDocumentCount() {
+		return documentCount;
+	}
+
+	@Override
+	public int getWordCount(int document) {
+		return documentSection.getInt((long) document * Integer.BYTES);
+	}
+
+	@Override
+	public float getNorm(int document) {
+		return documentSection.getFloat(normsAt + (long) document * Float.BYTES);
+	}
+
+	@Override
+	public PostingsIterator iterator(String word) {
+		int index = findWord(word, false);
+		return index < 0 ? null : new Postings(index);
+	}
+
+	@Override
+	public void prefixIterators(String prefix, Collection<PostingsIterator> iterators) {
+		int start = findWord(prefix, true);
+		int end = prefixEnd(prefix, start);
+		for (int index = start; index < end; index++) {
+			iterators.add(new Postings(index));
+		}
+	}
+
+	@Override
+	public void toJSON(Path output) throws IOException {
+		DocumentDictionary dictionary = new DocumentDictionary();
+		for (int document = 0; document < documentCount; document++) {
+			dictionary.add(getPath(document));
+		}
+		TreeJSONWriter.asDoubleNestedObject(new WordIterator(), dictionary, output);
+	}
+
+	@Override
+	public void toLocationJSON(Path output) throws IOException {
+		if (output != null) {
+			TreeMap<String, Integer> counts = new TreeMap<>();
+			for (int document = 0; document < documentCount; document++) {
+				counts.put(getPath(document), getWordCount(document));
+			}
+			TreeJSONWriter.asObject(counts, output);
+		}
+	}
+
+	/**
+	 * Goes through the words in order and reads the {@link PostingList} of each
+	 * word only when it is reached.
+	 */
+	private class WordIterator implements Iterator<Map.Entry<String, PostingList>> {
+		private int index = 0;
+
+		@Override
+		public boolean hasNext() {
+			return index < wordCount;
+		}
+
+		@Override
+		public Map.Entry<String, PostingList> next() {
+			if (index >= wordCount) {
+				throw new NoSuchElementException();
+			}
+			int start = wordStart(index);
+			int end = wordStart(index + 1);
+			int[] ids = new int[end - start];
+			PositionList[] lists = new PositionList[end - start];
+			for (int posting = start; posting < end; posting++) {
+				ids[posting - start] = documentAt(posting);
+				byte[] block = positions.bytes(positionStart(posting), positionStart(posting + 1));
+				lists[posting - start] = new PositionList(block, 0, block.length);
+			}
+			String word = decode(wordSection, textStart(index), textStart(index + 1));
+			index++;
+			return new AbstractMap.SimpleImmutableEntry<>(word, new PostingList(ids, lists));
+		}
+	}
+
+	/**
+	 * Walks the postings of one word in the mapped posting section.
+	 */
+	private class Postings extends PostingsIterator {
+		private final int word;
+
+		/**
+		 * Initializes an iterator over the postings of the word.
+		 *
+		 * @param index The index of the word
+		 */
+		public Postings(int index) {
+			super(wordStart(index), wordStart(index + 1));
+			this.word = index;
+		}
+
+		@Override
+		protected int documentAt(int index) {
+			return IndexSegment.this.documentAt(index);
+		}
+
+		@Override
+		public double maxScore() {
+			return wordSection.getFloat(boundsAt + (long) word * Float.BYTES);
+		}
+
+		@Override
+		protected int frequencyAt(int index) {
+			return IndexSegment.this.frequencyAt(index);
+		}
+
+		@Override
+		protected PrimitiveIterator.OfInt positionsAt(int index) {
+			long start = positionStart(index);
+			long end = positionStart(index + 1);
+			return PositionList.iterator(positions.view(start, end), 0, (int) (end - start));
+		}
+	}
+
+	/**
+	 * One section of the file, mapped in chunks of 1GB so it can be bigger than
+	 * one mapping can be. A value or text that crosses the end of a chunk is put
+	 * together from both chunks.
+	 */
+	private static class Section {
+		/** The number of bits of an offset inside a chunk. */
+		private static final int CHUNK_BITS = 30;
+		private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+		private final ByteBuffer[] chunks;
+
+		/**
+		 * Map the section of the file.
+		 *
+		 * @param channel The file
+		 * @param offset  Where the section starts in the file
+		 * @param length  The length of the section
+		 * @throws IOException if the file can not be mapped
+		 */
+		public Section(FileChannel channel, long offset, long length) throws IOException {
+			this.chunks = new ByteBuffer[(int) ((length + CHUNK_MASK) >>> CHUNK_BITS)];
+			for (int i = 0; i < chunks.length; i++) {
+				long start = (long) i << CHUNK_BITS;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start,
+						Math.min(CHUNK_MASK + 1, length - start));
+			}
+		}
+
+		/**
+		 * Returns the int at the offset.
+		 *
+		 * @param offset The offset in the section
+		 * @return the int
+		 */
+		public int getInt(long offset) {
+			ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+			int at = (int) (offset & CHUNK_MASK);
+			return at + Integer.BYTES <= chunk.limit() ? chunk.getInt(at)
+					: view(offset, offset + Integer.BYTES).getInt(0);
+		}
+
+		/**
+		 * Returns the float at the offset.
+		 *
+		 * @param offset The offset in the section
+		 * @return the float
+		 */
+		public float getFloat(long offset) {
+			return Float.intBitsToFloat(getInt(offset));
+		}
+
+		/**
+		 * Returns the long at the offset.
+		 *
+		 * @param offset The offset in the section
+		 * @return the long
+		 */
+		public long getLong(long offset) {
+			ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+			int at = (int) (offset & CHUNK_MASK);
+			return at + Long.BYTES <= chunk.limit() ? chunk.getLong(at)
+					: view(offset, offset + Long.BYTES).getLong(0);
+		}
+
+		/**
+		 * Returns a buffer of the bytes from the start to the end, with the first of
+		 * them at index 0. It is a view of the mapping unless the bytes cross the end
+		 * of a chunk, and then a copy.
+		 *
+		 * @param start The offset of the first byte
+		 * @param end   The offset after the last byte
+		 * @return the buffer
+		 */
+		public ByteBuffer view(long start, long end) {
+			int length = (int) (end - start);
+			if (length == 0) {
+				return ByteBuffer.allocate(0);
+			}
+			ByteBuffer chunk = chunks[(int) (start >>> CHUNK_BITS)];
+			int at = (int) (start & CHUNK_MASK);
+			if (at + length <= chunk.limit()) {
+				return chunk.duplicate().position(at).limit(at + length).slice();
+			}
+			return ByteBuffer.wrap(bytes(start, end));
+		}
+
+		/**
+		 * Returns a copy of the bytes from the start to the end.
+		 *
+		 * @param start The offset of the first byte
+		 * @param end   The offset after the last byte
+		 * @return the bytes
+		 */
+		public byte[] bytes(long start, long end) {
+			byte[] bytes = new byte[(int) (end - start)];
+			int copied = 0;
+			while (copied < bytes.length) {
+				long offset = start + copied;
+				ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+				int at = (int) (offset & CHUNK_MASK);
+				int length = Math.min(bytes.length - copied, chunk.limit() - at);
+				chunk.get(at, bytes, copied, length);
+				copied += length;
+			}
+			return bytes;
+		}
+	}
+
+	/**
+	 * Writes one part of the file through a buffer, starting at a fixed offset, so
+	 * the parts of a section can be written at the same time.
+	 */
+	private static class SectionWriter {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private long position;
+
+		/**
+		 * Initializes the writer.
+		 *
+		 * @param channel  The file
+		 * @param position The offset in the file of the first byte
+		 */
+		public SectionWriter(FileChannel channel, long position) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocate(WRITE_BUFFER);
+			this.position = position;
+		}
+
+		/**
+		 * Write an int.
+		 *
+		 * @param value The value
+		 * @throws IOException if the writer encounters any issues
+		 */
+		public void putInt(int value) throws IOException {
+			if (buffer.remaining() < Integer.BYTES) {
+				flush();
+			}
+			buffer.putInt(value);
+		}
+
+		/**
+		 * Write a float.
+		 *
+		 * @param value The value
+		 * @throws IOException if the writer encounters any issues
+		 */
+		public void putFloat(float value) throws IOException {
+			putInt(Float.floatToIntBits(value));
+		}
+
+		/**
+		 * Write a long.
+		 *
+		 * @param value The value
+		 * @throws IOException if the writer encounters any issues
+		 */
+		public void putLong(long value) throws IOException {
+			if (buffer.remaining() < Long.BYTES) {
+				flush();
+			}
+			buffer.putLong(value);
+		}
+
+		/**
+		 * Write bytes of an array.
+		 *
+		 * @param bytes  The array
+		 * @param offset The index of the first byte
+		 * @param length The number of bytes
+		 * @throws IOException if the writer encounters any issues
+		 */
+		public void put(byte[] bytes, int offset, int length) throws IOException {
+			while (length > 0) {
+				if (!buffer.hasRemaining()) {
+					flush();
+				}
+				int part = Math.min(length, buffer.remaining());
+				buffer.put(bytes, offset, part);
+				offset += part;
+				length -= part;
+			}
+		}
+
+		/**
+		 * Write the buffered bytes to the file.
+		 *
+		 * @throws IOException if the writer encounters any issues
+		 */
+		public void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+			buffer.clear();
+		}
+	}
+}
@@ -1,15 +1,25 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
-public class InvertedIndex {
+public class InvertedIndex implements WritableIndexInterface {
 
-	private final TreeMap<String, TreeMap<String, TreeSet<Integer>>> index;
-	private final TreeMap<String, Integer> location;
+	private final TreeMap<String, PostingList> index;
+	private final DocumentDictionary documents;
+	private int[] location;
+	private long wordTotal;
+	private long generation;
+	private String lastPath;
+	private int lastDocument;
+	/** How this index runs its searches. */
+	private volatile SearchSettings settings;
 
 	/**
 	 * This constructor for the InvertedIndex. it initialize index and location data
@@ -17,7 +27,13 @@ public class InvertedIndex {
 	 */
 	public InvertedIndex() {
 		this.index = new TreeMap<>();
-		this.location = new TreeMap<>();
+		this.documents = new DocumentDictionary();
+		this.location = new int[16];
+		this.wordTotal = 0;
+		this.generation = 0;
+		this.lastPath = null;
+		this.lastDocument = -1;
+		this.settings = SearchSettings.DEFAULT;
 	}
 
 	/**
@@ -29,15 +45,35 @@ public class InvertedIndex {
 	 * @param position The position in this file
 	 */
 	public void add(String word, String path, int position) {
-		index.putIfAbsent(word, new TreeMap<>());
-		index.get(word).putIfAbsent(path, new TreeSet<>());
-		index.get(word).get(path).add(position);
-		if (location.containsKey(path)) {
-			location.put(path, location.get(path) + 1);
-		} else {
-			location.put(path, 1);
+		int document = documentOf(path);
+		PostingList postings = index.get(word);
+		if (postings == null) {
+			postings = new PostingList();
+			index.put(word, postings);
 		}
+		postings.getOrAdd(document).add(position);
+		location[document]++;
+		wordTotal++;
+		generation++;
+	}
 
+	/**
+	 * Returns the document id of the path, giving it a new id and word count if it
+	 * has not been seen before. The last path is remembered because every word of
+	 * a file is added one after another.
+	 * 
+	 * @param path path of the file in directory
+	 * @return the document id of that path
+	 */
+	private int documentOf(String path) {
+		if (!path.equals(lastPath)) {
+			lastDocument = documents.add(path);
+			lastPath = path;
+			if (lastDocument >= location.length) {
+				location = Arrays.copyOf(location, Math.max(lastDocument + 1, location.length * 2));
+			}
+		}
+		return lastDocument;
 	}
 
 	/**
@@ -58,7 +94,7 @@ public class InvertedIndex {
 	 * @return true if the word is stored in the index at the specified file
 	 */
 	public boolean contains(String word, String location) {
-		return contains(word) && this.index.get(word).containsKey(location);
+		return positions(word, location) != null;
 	}
 
 	/**
@@ -70,7 +106,24 @@ public class InvertedIndex {
 	 * @return true if the word is stored in the index at the specified file
 	 */
 	public boolean contains(String word, String location, int position) {
-		return contains(word, location) && this.index.get(word).get(location).contains(position);
+		PositionList positions = positions(word, location);
+		return positions != null && positions.contains(position);
+	}
+
+	/**
+	 * Returns the positions of the word in the file.
+	 * 
+	 * @param word     Word to look for
+	 * @param location The location of the word in the file
+	 * @return the positions, or null if the word is not in that file
+	 */
+	private PositionList positions(String word, String location) {
+		PostingList postings = index.get(word);
+		int document = documents.getId(location);
+		if (postings == null || document < 0) {
+			return null;
+		}
+		return postings.get(document);
 	}
 
 	/**
@@ -81,68 +134,75 @@ public class InvertedIndex {
 	 * @return Arraylist of result object
 	 */
 	public ArrayList<Result> exactSearch(TreeSet<String> arrayline) {
-		ArrayList<Result> resultList = new ArrayList<Result>();
-		HashMap<String, Result> lookup = new HashMap<String, Result>();
-
-		for (String word : arrayline) {
-			if (index.containsKey(word)) {
-				searchHelper(lookup, resultList, word);
-			}
-		}
+		return QueryEngine.exactSearch(this, arrayline, settings);
+	}
 
-		Collections.sort(resultList);
-		return resultList;
+	/**
+	 * It will do the partial Search to find the right answer in the inverted index
+	 * data structure
+	 * 
+	 * @param arrayline TreeSet of all the string that you need to search
+	 * @return Arraylist of result object
+	 */
+	public ArrayList<Result> partialSearch(TreeSet<String> arrayline) {
+		return QueryEngine.partialSearch(this, arrayline, settings);
 	}
 
 	/**
-	 * Put the search result into the Arraylist.
+	 * It will search the index and return only the best k results.
 	 * 
-	 * @param lookup     the HashMap to check the location
-	 * @param resultList the data structure to contain the result
-	 * @param word       The word that you need to search in the invertIndex。
+	 * @param arrayline TreeSet of all the string that you need to search
+	 * @param exact     True for an exact search, false for a partial search
+	 * @param k         The number of results to return, or 0 or less for all
+	 * @return Arraylist of the best k result objects
 	 */
-	private void searchHelper(HashMap<String, Result> lookup, ArrayList<Result> resultList, String word) {
-		for (String indexPath : index.get(word).keySet()) {
-			int totalword = location.get(indexPath);
-			int matchword = index.get(word).get(indexPath).size();
-			boolean exist = lookup.containsKey(indexPath);
+	public ArrayList<Result> search(TreeSet<String> arrayline, boolean exact, int k) {
+		return QueryEngine.search(this, arrayline, exact, k, settings);
+	}
 
-			if (exist == false) {
-				Result result = new Result(totalword, matchword, indexPath);
-				resultList.add(result);
-				lookup.put(indexPath, result);
-			} else {
-				Result result = lookup.get(indexPath);
-				result.updateMatches(matchword);
-			}
-		}
+	/**
+	 * It will search the index with a query that may have phrase and proximity
+	 * clauses, and return only the best k results.
+	 * 
+	 * @param query The parsed query
+	 * @param exact True for an exact search, false for a partial search
+	 * @param k     The number of results to return, or 0 or less for all
+	 * @return Arraylist of the best k result objects
+	 */
+	public ArrayList<Result> search(Query query, boolean exact, int k) {
+		return QueryEngine.search(this, query, exact, k, settings);
+	}
 
+	/**
+	 * It will search the index for every query of a batch, reading the postings
+	 * of a word only once for all the queries that have it.
+	 * 
+	 * @param queries The parsed queries
+	 * @param exact   True for an exact search, false for a partial search
+	 * @param queue   The work queue to share the work with, or null
+	 * @return Arraylist of the sorted results of every query, in query order
+	 */
+	public ArrayList<ArrayList<Result>> search(List<Query> queries, boolean exact, WorkQueue queue) {
+		return QueryBatch.search(this, queries, exact, queue, settings);
 	}
 
 	/**
-	 * It will do the partial Search to find the right answer in the inverted index
-	 * data structure
+	 * It will return the number of changes made to this index so far.
 	 * 
-	 * @param arrayline TreeSet of all the string that you need to search
-	 * @return Arraylist of result object
+	 * @return the generation of this index
 	 */
-	public ArrayList<Result> partialSearch(TreeSet<String> arrayline) {
-		ArrayList<Result> resultList = new ArrayList<Result>();
-		HashMap<String, Result> lookup = new HashMap<String, Result>();
-
-		for (String word : arrayline) {
-			for (String indexword : index.tailMap(word).keySet()) {
-				if (indexword.startsWith(word)) {
-					searchHelper(lookup, resultList, indexword);
-				} else {
-					break;
-				}
-			}
-		}
+	public long getGeneration() {
+		return generation;
+	}
 
-		Collections.sort(resultList);
-		return resultList;
+	@Override
+	public SearchSettings getSearchSettings() {
+		return settings;
+	}
 
+	@Override
+	public void setSearchSettings(SearchSettings settings) {
+		this.settings = settings;
 	}
 
 	/***
@@ -152,7 +212,7 @@ public class InvertedIndex {
 	 * @param output the file's path that need to write to
 	 */
 	public void toJSON(Path output) throws IOException {
-		TreeJSONWriter.asDoubleNestedObject(index, output);
+		TreeJSONWriter.asDoubleNestedObject(index.entrySet().iterator(), documents, output);
 	}
 
 	/**
@@ -163,7 +223,96 @@ public class InvertedIndex {
 	 */
 	public void toLocationJSON(Path output) throws IOException {
 		if (output != null) {
-			TreeJSONWriter.asObject(location, output);
+			TreeMap<String, Integer> counts = new TreeMap<>();
+			for (int document = 0; document < documents.size(); document++) {
+				counts.put(documents.getPath(document), location[document]);
+			}
+			TreeJSONWriter.asObject(counts, output);
+		}
+	}
+
+	/**
+	 * Copy this index into an immutable {@link FrozenInvertedIndex} that can be
+	 * searched faster and without any locks. Later changes to this index are not
+	 * seen by the frozen copy.
+	 * 
+	 * @return the frozen copy of this index
+	 */
+	public FrozenInvertedIndex freeze() {
+		FrozenInvertedIndex frozen = FrozenInvertedIndex.build(index, documents, location);
+		frozen.setSearchSettings(settings);
+		return frozen;
+	}
+
+	/**
+	 * Write this index as a segment file that can be searched through a memory
+	 * mapping with {@link IndexSegment#open(Path)}.
+	 * 
+	 * @param output The path of the segment file
+	 * @throws IOException if the writer encounters any issues
+	 */
+	public void saveSegment(Path output) throws IOException {
+		IndexSegment.write(this::postings, documents, location, output);
+	}
+
+	/**
+	 * Returns the words and their postings in word order. The index must not be
+	 * changed while the iterator is used.
+	 * 
+	 * @return iterator over every word and its postings
+	 */
+	public Iterator<Map.Entry<String, PostingList>> postings() {
+		return index.entrySet().iterator();
+	}
+
+	/**
+	 * Returns the dictionary of the document ids used by this index.
+	 * 
+	 * @return the document dictionary
+	 */
+	public DocumentDictionary getDocuments() {
+		return documents;
+	}
+
+	/**
+	 * Returns the total number of words in the document.
+	 * 
+	 * @param document The document id
+	 * @return word count of that document
+	 */
+	public int getWordCount(int document) {
+		return location[document];
+	}
+
+	@Override
+	public float getNorm(int document) {
+		return wordTotal == 0 ? 1 : (float) ((double) location[document] * documents.size() / wordTotal);
+	}
+
+	@Override
+	public int getDocumentCount() {
+		return documents.size();
+	}
+
+	@Override
+	public String getPath(int document) {
+		return documents.getPath(document);
+	}
+
+	@Override
+	public PostingsIterator iterator(String word) {
+		PostingList postings = index.get(word);
+		return postings == null ? null : postings.iterator();
+	}
+
+	@Override
+	public void prefixIterators(String prefix, Collection<PostingsIterator> iterators) {
+		for (Map.Entry<String, PostingList> entry : index.tailMap(prefix).entrySet()) {
+			if (entry.getKey().startsWith(prefix)) {
+				iterators.add(entry.getValue().iterator());
+			} else {
+				break;
+			}
 		}
 	}
 
@@ -174,26 +323,58 @@ public class InvertedIndex {
 	 * @param other Every thread's InvertedIndex data structure.
 	 */
 	public void addAll(InvertedIndex other) {
-		for (String word : other.index.keySet()) {
-			if (this.index.containsKey(word)) {
-				for (String path : other.index.get(word).keySet()) {
-					if (this.index.get(word).containsKey(path)) {
-						this.index.get(word).get(path).addAll(other.index.get(word).get(path));
-					} else {
-						this.index.get(word).put(path, other.index.get(word).get(path));
-					}
-				}
-			} else {
-				this.index.put(word, other.index.get(word));
-			}
+		DocumentDictionary documents = other.getDocuments();
+		int[] counts = new int[documents.size()];
+		for (int document = 0; document < counts.length; document++) {
+			counts[document] = other.getWordCount(document);
+		}
+		addAll(other.postings(), documents, counts);
+	}
+
+	/**
+	 * Add every word of a frozen index, for example one loaded from a snapshot, to
+	 * this index.
+	 * 
+	 * @param other The frozen index to add
+	 */
+	public void addAll(FrozenInvertedIndex other) {
+		DocumentDictionary documents = other.getDocuments();
+		int[] counts = new int[documents.size()];
+		for (int document = 0; document < counts.length; document++) {
+			counts[document] = other.getWordCount(document);
+		}
+		addAll(other.postings(), documents, counts);
+	}
 
+	/**
+	 * Add the postings of another index to this index, changing the document ids
+	 * of the other index to the document ids of this index.
+	 * 
+	 * @param postings  The words and postings of the other index
+	 * @param documents The document dictionary of the other index
+	 * @param counts    The word counts of the other index by document id
+	 */
+	private void addAll(Iterator<Map.Entry<String, PostingList>> postings, DocumentDictionary documents,
+			int[] counts) {
+		generation++;
+		int[] remap = new int[documents.size()];
+		for (int document = 0; document < remap.length; document++) {
+			remap[document] = documentOf(documents.getPath(document));
+			location[remap[document]] += counts[document];
+			wordTotal += counts[document];
 		}
 
-		for (String x : other.location.keySet()) {
-			if (this.location.containsKey(x)) {
-				this.location.put(x, other.location.get(x) + this.location.get(x));
+		while (postings.hasNext()) {
+			Map.Entry<String, PostingList> entry = postings.next();
+			PostingList theirs = entry.getValue();
+			PostingList mine = this.index.get(entry.getKey());
+			if (mine == null) {
+				mine = new PostingList();
+				this.index.put(entry.getKey(), mine);
+			}
+			for (int i = 0; i < theirs.size(); i++) {
+				mine.add(remap[theirs.document(i)], theirs.positions(i));
 			}
-			this.location.put(x, other.location.get(x));
 		}
 	}
 
@@ -6,9 +6,6 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
-import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
-
 
 public class InvertedIndexBuilder {
 	
@@ -22,7 +19,7 @@ public class InvertedIndexBuilder {
  * 
  * @see {@link DirectoryStream}
  */
-	public static void traverse(Path directory, InvertedIndex invert) throws IOException {
+	public static void traverse(Path directory, WritableIndexInterface invert) throws IOException {
 		if (Files.isDirectory(directory)) {
 			try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
 				Iterator<Path> list = listing.iterator();
@@ -47,16 +44,16 @@ public class InvertedIndexBuilder {
 	 * @param path The path of the file that we need to read
 	 * @param invert The Invertedindex object 
 	 */
-	public static void fileReader(Path path, InvertedIndex invert) throws FileNotFoundException, IOException {
+	public static void fileReader(Path path, WritableIndexInterface invert) throws FileNotFoundException, IOException {
 		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
 			String contentLine;
 			int position = 1; 
-			Stemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
+			TextTokenizer tokenizer = new TextTokenizer();
 			String fileLocation = path.toString();
 			while ((contentLine = reader.readLine()) != null) {
-				String[] words = TextParser.parse(contentLine);
-				for (String word : words) {
-					String stem = stemmer.stem(word).toString();
+				tokenizer.reset(contentLine);
+				while (tokenizer.next()) {
+					String stem = StemCache.SHARED.stem(tokenizer.token());
 					invert.add(stem, fileLocation, position);
 					position++;
 				}
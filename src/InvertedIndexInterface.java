@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+public interface InvertedIndexInterface {
+	/**
+	 * test if that word is in your index
+	 *
+	 * @param word The word in the file
+	 * @return return True if contain the word otherwise return false.
+	 */
+	public boolean contains(String word);
+
+	/**
+	 * Tests whether the index contains the specified word at the specified file.
+	 *
+	 * @param word     Word to look for
+	 * @param location The location of the word in the file
+	 * @return true if the word is stored in the index at the specified file
+	 */
+	public boolean contains(String word, String location);
+
+	/**
+	 * check if it is contains position.
+	 *
+	 * @param word     Word to look for
+	 * @param location The location of the word in the file
+	 * @param position Position to look for word
+	 * @return true if the word is stored in the index at the specified file
+	 */
+	public boolean contains(String word, String location, int position);
+
+	/**
+	 * It will do the exactSearch to find the right result in the index
+	 *
+	 * @param arrayline TreeSet of all the string that you need to search
+	 * @return Arraylist of result object
+	 */
+	public ArrayList<Result> exactSearch(TreeSet<String> arrayline);
+
+	/**
+	 * It will do the partial Search to find the right answer in the index
+	 *
+	 * @param arrayline TreeSet of all the string that you need to search
+	 * @return Arraylist of result object
+	 */
+	public ArrayList<Result> partialSearch(TreeSet<String> arrayline);
+
+	/**
+	 * It will search the index and return only the best k results, in the same
+	 * order as the first k results of exactSearch or partialSearch.
+	 *
+	 * @param arrayline TreeSet of all the string that you need to search
+	 * @param exact     True for an exact search, false for a partial search
+	 * @param k         The number of results to return, or 0 or less for all
+	 * @return Arraylist of the best k result objects
+	 */
+	public ArrayList<Result> search(TreeSet<String> arrayline, boolean exact, int k);
+
+	/**
+	 * It will search the index with a query that may have phrase and proximity
+	 * clauses, and return only the best k results.
+	 *
+	 * @param query The parsed query
+	 * @param exact True for an exact search, false for a partial search
+	 * @param k     The number of results to return, or 0 or less for all
+	 * @return Arraylist of the best k result objects
+	 */
+	public ArrayList<Result> search(Query query, boolean exact, int k);
+
+	/**
+	 * It will search the index for every query of a batch, reading the postings
+	 * of a word only once for all the queries that have it. The results are the
+	 * same as searching the queries one by one for all the results.
+	 *
+	 * @param queries The parsed queries
+	 * @param exact   True for an exact search, false for a partial search
+	 * @param queue   The work queue to share the work with, or null to search in
+	 *                this thread only
+	 * @return Arraylist of the sorted results of every query, in query order
+	 */
+	public ArrayList<ArrayList<Result>> search(List<Query> queries, boolean exact, WorkQueue queue);
+
+	/**
+	 * It will return the generation of the data that searches see right now. It
+	 * changes whenever a change to the index can change a search result, so a
+	 * result found at one generation can be reused while it stays the same.
+	 *
+	 * @return the generation, which only ever grows
+	 */
+	public long getGeneration();
+
+	/**
+	 * It will return how this index runs its searches, like the scoring model of
+	 * the results.
+	 *
+	 * @return the search settings
+	 */
+	public SearchSettings getSearchSettings();
+
+	/**
+	 * Set how this index runs its searches from now on.
+	 *
+	 * @param settings The search settings
+	 */
+	public void setSearchSettings(SearchSettings settings);
+
+	/**
+	 * write the index to the JSON file.
+	 *
+	 * @param output path of file will write to
+	 * @throws IOException if the writer encounters any issues
+	 */
+	public void toJSON(Path output) throws IOException;
+
+	/**
+	 * write the word count of every location to the JSON file.
+	 *
+	 * @param output path of file will write to
+	 * @throws IOException if the writer encounters any issues
+	 */
+	public void toLocationJSON(Path output) throws IOException;
+
+}
@@ -3,6 +3,7 @@ import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Iterator;
 
 public class MultiThreadInvertedIndexBuilder { 
@@ -11,15 +12,41 @@ public class MultiThreadInvertedIndexBuilder {
 	 * method to the muti thread
 	 * 
 	 * @param directory The path of the file
-	 * @param invert    The invertedIndex Data structure
+	 * @param invert    The thread safe invertedIndex Data structure
 	 * @param thread    The number of the thread
 	 * @throws IOException
 	 * @throws InterruptedException
 	 */
-	public static void traverse(Path directory, ThreadSafeInvertedIndex invert,  WorkQueue queue)
+	public static void traverse(Path directory, WritableIndexInterface invert,  WorkQueue queue)
 			throws IOException, InterruptedException {
-		traverseHelper(directory, invert,queue	);
+		traverse(directory, invert, queue, false);
+	}
+
+	/**
+	 * It will build the invertedIndex from the directory with the workQueue. If
+	 * reduce is true the local index of every file is merged pairwise with the
+	 * others by the worker threads, and only the final index is added to the
+	 * shared invertedIndex, so the write lock is taken once instead of once per
+	 * file.
+	 * 
+	 * @param directory The path of the file
+	 * @param invert    The thread safe invertedIndex Data structure
+	 * @param queue     The workQueue to run the tasks
+	 * @param reduce    True to merge the local indexes before adding them
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public static void traverse(Path directory, WritableIndexInterface invert, WorkQueue queue, boolean reduce)
+			throws IOException, InterruptedException {
+		Reduction reduction = reduce ? new Reduction() : null;
+		traverseHelper(directory, invert, queue, reduction);
 		queue.finish();
+		if (reduction != null) {
+			InvertedIndex result = reduction.finish();
+			if (result != null) {
+				invert.addAll(result);
+			}
+		}
 	}
 
 	/**
@@ -28,24 +55,32 @@ public class MultiThreadInvertedIndexBuilder {
 	 * 
 	 * @param directory The directory that need to traverse
 	 * @param invert    The invertIndex object to pass into fileReader method
+	 * @param queue     The workQueue to run the tasks
+	 * @param reduction Where to merge the local indexes, or null to add them to
+	 *                  invert directly
 	 * @throws IOException When file is not exist
 	 * 
 	 * @see {@link DirectoryStream}
 	 */
-	private static void traverseHelper(Path directory, ThreadSafeInvertedIndex invert,WorkQueue queue) throws IOException {
+	private static void traverseHelper(Path directory, WritableIndexInterface invert, WorkQueue queue,
+			Reduction reduction) throws IOException {
 		if (Files.isDirectory(directory)) {
 			try (DirectoryStream<Path> listing = Files.newDirectoryStream(directory)) {
 				Iterator<Path> list = listing.iterator();
 				Path currentFile;
 				while (list.hasNext()) {
 					currentFile = list.next();
-					traverseHelper(currentFile, invert, queue);
+					traverseHelper(currentFile, invert, queue, reduction);
 				}
 			}
 		} else {
 			String path1 = directory.toString().toLowerCase();
 			if (path1.endsWith(".text") || path1.endsWith(".txt")) {
-				queue.execute(new fileReaderTask(directory, invert));
+				if (reduction != null) {
+					queue.execute(new fileReducerTask(directory, reduction));
+				} else {
+					queue.execute(new fileReaderTask(directory, invert));
+				}
 			}
 		}
 	}
@@ -58,9 +93,9 @@ public class MultiThreadInvertedIndexBuilder {
 	 */
 	public static class fileReaderTask implements Runnable {
 		private Path directory;
-		private InvertedIndex invert;
+		private WritableIndexInterface invert;
 
-		public fileReaderTask(Path directory, InvertedIndex invert) {
+		public fileReaderTask(Path directory, WritableIndexInterface invert) {
 			this.directory = directory;
 			this.invert = invert;
 		}
@@ -80,4 +115,109 @@ public class MultiThreadInvertedIndexBuilder {
 
 	}
 
+	/**
+	 * The inner class to read one file into a local index and merge it into the
+	 * reduction instead of the shared index
+	 *
+	 */
+	public static class fileReducerTask implements Runnable {
+		private Path directory;
+		private Reduction reduction;
+
+		public fileReducerTask(Path directory, Reduction reduction) {
+			this.directory = directory;
+			this.reduction = reduction;
+		}
+
+		@Override
+		public void run() {
+			InvertedIndex temp = new InvertedIndex();
+			try {
+				InvertedIndexBuilder.fileReader(directory, temp);
+				reduction.add(temp);
+			} catch (FileNotFoundException e) {
+				System.out.println("The writer can't write to the file " + directory);
+			} catch (IOException e) {
+				System.out.println("The writer can't write to the file " + directory);
+			}
+		}
+	}
+
+	/**
+	 * Merges the local indexes like a binary counter: an index that holds 2^k
+	 * files waits at level k until another index of the same level arrives, and
+	 * the two are merged into one index of level k + 1 by the thread that
+	 * arrived last. The merges run in parallel on the worker threads without any
+	 * lock on the shared index, and each file is copied about log(files) times.
+	 */
+	public static class Reduction {
+		/** The index waiting at each level, or null if there is none. */
+		private final ArrayList<InvertedIndex> levels;
+
+		public Reduction() {
+			this.levels = new ArrayList<>();
+		}
+
+		/**
+		 * It will add the local index of one file to the reduction, merging it with
+		 * the waiting indexes of the same size until there is no partner left.
+		 * 
+		 * @param index The local index of the file
+		 */
+		public void add(InvertedIndex index) {
+			int level = 0;
+			while (true) {
+				InvertedIndex other;
+				synchronized (levels) {
+					if (level == levels.size()) {
+						levels.add(null);
+					}
+					other = levels.get(level);
+					if (other == null) {
+						levels.set(level, index);
+						return;
+					}
+					levels.set(level, null);
+				}
+				index = merge(other, index);
+				level++;
+			}
+		}
+
+		/**
+		 * It will merge every index that is still waiting once all the files are
+		 * read.
+		 * 
+		 * @return the merged index, or null if no file was added
+		 */
+		public InvertedIndex finish() {
+			InvertedIndex result = null;
+			synchronized (levels) {
+				for (int level = 0; level < levels.size(); level++) {
+					InvertedIndex index = levels.get(level);
+					if (index != null) {
+						result = result == null ? index : merge(index, result);
+						levels.set(level, null);
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Merge the smaller index into the larger one.
+		 * 
+		 * @param first  One index
+		 * @param second The other index
+		 * @return the merged index
+		 */
+		private static InvertedIndex merge(InvertedIndex first, InvertedIndex second) {
+			if (first.getDocuments().size() < second.getDocuments().size()) {
+				second.addAll(first);
+				return second;
+			}
+			first.addAll(second);
+			return first;
+		}
+	}
 }
@@ -3,25 +3,30 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.TreeMap;
-import java.util.TreeSet;
-
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 public class MultiThreadQueryBuilder implements QueryBuilderInterface {
 
-	private final TreeMap<String, ArrayList<Result>> results;
-	private final ThreadSafeInvertedIndex index;
+	private final ConcurrentSkipListMap<String, ArrayList<Result>> results;
+	/** The searches running right now, so the same query is only searched once. */
+	private final ConcurrentHashMap<String, CompletableFuture<ArrayList<Result>>> running;
+	private final InvertedIndexInterface index;
 	private WorkQueue queue;
 
 	/**
 	 * The constructor of the multithreadQueryBuilder
 	 * 
-	 * @param index  The invertedIndex DataStructure
+	 * @param index  The index to search, it must be safe to search from several
+	 *               threads at once like a {@link ThreadSafeInvertedIndex} or a
+	 *               {@link FrozenInvertedIndex}
 	 * @param thread The number of thread that you need to use
 	 */
-	public MultiThreadQueryBuilder(ThreadSafeInvertedIndex index, WorkQueue queue) {
-		this.results = new TreeMap<String, ArrayList<Result>>();
+	public MultiThreadQueryBuilder(InvertedIndexInterface index, WorkQueue queue) {
+		this.results = new ConcurrentSkipListMap<String, ArrayList<Result>>();
+		this.running = new ConcurrentHashMap<String, CompletableFuture<ArrayList<Result>>>();
 		this.index = index;
 		this.queue = queue;
 	}
@@ -44,6 +49,36 @@ public class MultiThreadQueryBuilder implements QueryBuilderInterface {
 		queue.finish();
 	}
 
+	/**
+	 * It will read every query of the file and search them as one batch, with the
+	 * work shared by the threads of the work queue.
+	 * 
+	 * @param path       The path of file
+	 * @param exactCheck Cheek it is partial search or exactedsearch
+	 * @throws IOException reader cann't find the right path
+	 */
+	public void addBatchSearchResult(Path path, boolean exactCheck) throws IOException {
+		TextTokenizer tokenizer = new TextTokenizer();
+		LinkedHashMap<String, Query> queries = new LinkedHashMap<>();
+		try (BufferedReader br = new BufferedReader(new FileReader(path.toFile()))) {
+			String contentLine;
+			while ((contentLine = br.readLine()) != null) {
+				Query query = Query.parse(contentLine, tokenizer);
+				String oneLine = query.toString();
+
+				if (!query.isEmpty() && !results.containsKey(oneLine)) {
+					queries.putIfAbsent(oneLine, query);
+				}
+			}
+		}
+
+		ArrayList<ArrayList<Result>> found = index.search(new ArrayList<>(queries.values()), exactCheck, queue);
+		int i = 0;
+		for (String oneLine : queries.keySet()) {
+			results.put(oneLine, found.get(i++));
+		}
+	}
+
 	private class searchTask implements Runnable { 
 		private final String line;
 		private final boolean exact;
@@ -55,37 +90,53 @@ public class MultiThreadQueryBuilder implements QueryBuilderInterface {
 
 		@Override
 		public void run() {
-			SnowballStemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
-			TreeSet<String> words = new TreeSet<>();
+			Query query = Query.parse(line);
+			String oneLine = query.toString();
 
-			for (String s : TextParser.parse(line)) {
-				String word = stemmer.stem(s).toString();
-				if (!word.isEmpty()) {
-					words.add(word);
-				}
+			if (!query.isEmpty()) {
+				search(oneLine, query, exact);
 			}
+		}
 
-			String oneLine = String.join(" ", words);
+	}
 
-			if (!words.isEmpty()) {
-				synchronized (results) {
-					if (results.containsKey(oneLine)) {
-						return;
-					}
-				}
+	/**
+	 * It will return the results of the query. Only one task searches the index
+	 * for a query at a time, the other tasks with the same query wait for its
+	 * results instead of searching again.
+	 * 
+	 * @param key   The query as it is written in the results
+	 * @param query The parsed query
+	 * @param exact True for an exact search, false for a partial search
+	 * @return The results of the query
+	 */
+	private ArrayList<Result> search(String key, Query query, boolean exact) {
+		ArrayList<Result> result = results.get(key);
+		if (result != null) {
+			return result;
+		}
 
-				ArrayList<Result> result;
-				if (exact) {
-					result = index.exactSearch(words);
-				} else {
-					result = index.partialSearch(words);
-				}
-				synchronized (results) {
-					results.put(oneLine, result);
-				}
-			}
+		CompletableFuture<ArrayList<Result>> future = new CompletableFuture<>();
+		CompletableFuture<ArrayList<Result>> other = running.putIfAbsent(key, future);
+		if (other != null) {
+			return other.join();
 		}
 
+		try {
+			// the last search may have finished after the first check
+			result = results.get(key);
+			if (result == null) {
+				result = index.search(query, exact, 0);
+				results.put(key, result);
+			}
+			future.complete(result);
+			return result;
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			running.remove(key, future);
+		}
 	}
 
 	/**
@@ -95,9 +146,7 @@ public class MultiThreadQueryBuilder implements QueryBuilderInterface {
 	 * @throws IOException IOException if the writer encounters any issues
 	 */
 	public void toResultJSON(Path output) throws IOException {
-		synchronized (results) {
-			TreeJSONWriter.searchNestedObject(results, output);
-		}
+		TreeJSONWriter.searchNestedObject(results, output);
 	}
 
 }
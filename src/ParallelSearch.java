@@ -0,0 +1,207 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Splits the search of one query over the threads of a {@link WorkQueue}. A
+ * short prefix of a partial search can stand for thousands of words, and the
+ * {@link QueryEngine} reads all of their postings in one thread. Here the
+ * document ids are cut into one range for every thread. Every range gets its
+ * own copy of the iterators of the query words, which are looked up only once,
+ * moves each of them to the start of the range and adds up their postings into
+ * a table of its own until the end of the range, and keeps its best results.
+ * The best of all the ranges are the results.
+ *
+ * <p>
+ * Every document still adds up its words in the same order as the query
+ * engine, so the results and scores are the same as searching in one thread,
+ * and the tables of the ranges never have to be merged. The same tables add up
+ * a partial search of a {@link ConcurrentInvertedIndex} one stripe at a time.
+ * </p>
+ */
+public class ParallelSearch {
+
+	/** The arrays of each thread, reused between the ranges. */
+	private static final ThreadLocal<ParallelSearch> TABLES = ThreadLocal.withInitial(ParallelSearch::new);
+
+	/** The frequency and score of every document of a range, zero between uses. */
+	private int[] frequencies;
+	private double[] scores;
+	/** The document ids with a frequency that is not zero. */
+	private int[] documents;
+	private int count;
+	/** The range of document ids of the search using the table. */
+	private int first;
+	private int last;
+
+	/**
+	 * Initializes empty arrays.
+	 */
+	private ParallelSearch() {
+		this.frequencies = new int[0];
+		this.scores = new double[0];
+		this.documents = new int[64];
+		this.count = 0;
+		this.first = 0;
+		this.last = 0;
+	}
+
+	/**
+	 * It will search the index on the threads of the work queue and return the
+	 * best k documents.
+	 *
+	 * @param source  The index to search
+	 * @param terms   The iterators of the words the query stands for, which are
+	 *                not moved
+	 * @param k       The number of results to return, or 0 or less for all
+	 * @param scoring The scoring model, or null for the matches divided by the
+	 *                word count
+	 * @param queue   The work queue to share the work with
+	 * @return the best k results in sorted order
+	 */
+	public static ArrayList<Result> search(PostingsSource source, List<PostingsIterator> terms, int k,
+			ScoringModel scoring, WorkQueue queue) {
+		int limit = source.getDocumentCount();
+		int parts = Math.max(1, Math.min(queue.size() + 1, limit));
+
+		ArrayList<ArrayList<Result>> ranges = new ArrayList<>(Collections.nCopies(parts, null));
+		queue.invokeAll(parts, range -> {
+			int first = (int) ((long) limit * range / parts);
+			int last = (int) ((long) limit * (range + 1) / parts);
+			ranges.set(range, search(source, terms, first, last, limit, k, scoring));
+		});
+
+		ArrayList<Result> resultList = new ArrayList<Result>();
+		for (ArrayList<Result> range : ranges) {
+			resultList.addAll(range);
+		}
+		Collections.sort(resultList);
+		if (k > 0 && resultList.size() > k) {
+			resultList.subList(k, resultList.size()).clear();
+		}
+		return resultList;
+	}
+
+	/**
+	 * It will add up the postings of every query word for a range of document ids
+	 * and return the best k documents of the range.
+	 *
+	 * @param source  The index to search
+	 * @param terms   The iterators of the query words, copied before they are moved
+	 * @param first   The first document id of the range
+	 * @param last    One past the last document id of the range
+	 * @param limit   The document count when the search started
+	 * @param k       The number of results to keep, or 0 or less for all
+	 * @param scoring The scoring model, or null
+	 * @return the best k results of the range, in document id order when all of
+	 *         them are kept
+	 */
+	private static ArrayList<Result> search(PostingsSource source, List<PostingsIterator> terms, int first,
+			int last, int limit, int k, ScoringModel scoring) {
+		ArrayList<PostingsIterator> copies = new ArrayList<>(terms.size());
+		for (PostingsIterator term : terms) {
+			copies.add(term.copy());
+		}
+		ParallelSearch table = table(first, last);
+		table.add(source, copies, limit, scoring);
+		return table.results(source, k, scoring);
+	}
+
+	/**
+	 * It will return the empty table of this thread for a range of document ids.
+	 * The postings of a search can be added to it in parts with
+	 * {@link #add(PostingsSource, Collection, int, ScoringModel)}, for example
+	 * one part for every stripe of a {@link ConcurrentInvertedIndex} while only
+	 * that stripe is locked, and the results are read once with
+	 * {@link #results(PostingsSource, int, ScoringModel)}.
+	 *
+	 * @param first The first document id of the range
+	 * @param last  One past the last document id of the range
+	 * @return the table of this thread
+	 */
+	public static ParallelSearch table(int first, int last) {
+		ParallelSearch table = TABLES.get();
+		if (table.frequencies.length < last - first) {
+			table.frequencies = new int[Math.max(last - first, table.frequencies.length * 2)];
+			table.scores = new double[table.frequencies.length];
+		}
+		table.first = first;
+		table.last = last;
+		table.count = 0;
+		return table;
+	}
+
+	/**
+	 * It will add up the postings of the iterators in the range of this table,
+	 * moving the iterators. The parts of a search must be added in the same order
+	 * as the query engine reads the words, so every document adds up its scores
+	 * in the same order.
+	 *
+	 * @param source  The index the iterators came from
+	 * @param terms   The iterators of the query words
+	 * @param limit   The document count when the search started
+	 * @param scoring The scoring model, or null
+	 */
+	public void add(PostingsSource source, Collection<PostingsIterator> terms, int limit, ScoringModel scoring) {
+		for (PostingsIterator term : terms) {
+			double weight = scoring == null ? 0 : scoring.weight(term.cost(), limit);
+			for (int document = term.advance(first); document < last; document = term.next()) {
+				int frequency = term.frequency();
+				int slot = document - first;
+				if (frequencies[slot] == 0) {
+					if (count == documents.length) {
+						documents = Arrays.copyOf(documents, count * 2);
+					}
+					documents[count++] = document;
+				}
+				frequencies[slot] += frequency;
+				if (scoring != null) {
+					scores[slot] += scoring.score(weight, frequency, source.getNorm(document));
+				}
+			}
+		}
+	}
+
+	/**
+	 * It will return the best k documents added to this table, and empty the
+	 * table for the next search.
+	 *
+	 * @param source  The index the postings came from
+	 * @param k       The number of results to keep, or 0 or less for all
+	 * @param scoring The scoring model, or null
+	 * @return the best k results, in document id order when all of them are kept
+	 */
+	public ArrayList<Result> results(PostingsSource source, int k, ScoringModel scoring) {
+		Arrays.sort(documents, 0, count);
+
+		// in document id order like the query engine, so equal results keep its order
+		PriorityQueue<Result> best = new PriorityQueue<>(k > 0 ? Math.min(k, 1024) : 16, Collections.reverseOrder());
+		ArrayList<Result> resultList = new ArrayList<Result>(k > 0 ? 0 : count);
+		for (int i = 0; i < count; i++) {
+			int document = documents[i];
+			int slot = document - first;
+			Result result = scoring != null
+					? new RankedResult(source.getWordCount(document), frequencies[slot], source.getPath(document),
+							scores[slot])
+					: new Result(source.getWordCount(document), frequencies[slot], source.getPath(document));
+			frequencies[slot] = 0;
+			scores[slot] = 0;
+			if (k <= 0) {
+				resultList.add(result);
+			} else if (best.size() < k) {
+				best.add(result);
+			} else if (result.compareTo(best.peek()) < 0) {
+				best.poll();
+				best.add(result);
+			}
+		}
+		count = 0;
+		if (k > 0) {
+			resultList.addAll(best);
+		}
+		return resultList;
+	}
+}
@@ -0,0 +1,49 @@
+/**
+ * Counts the pages of a crawl that are still being fetched, parsed or added to
+ * the index, so the crawl can wait until every page is done. The crawlers need
+ * it because their pages finish in fetch callbacks and stage threads, which a
+ * {@link WorkQueue} does not count.
+ */
+public class PendingPages {
+
+	/** The pages that started and are not done yet. */
+	private int pending;
+
+	/**
+	 * Initializes the counter with no pages.
+	 */
+	public PendingPages() {
+		this.pending = 0;
+	}
+
+	/**
+	 * Count a page that started to be fetched.
+	 */
+	public synchronized void start() {
+		pending++;
+	}
+
+	/**
+	 * Count a page that is done, and wake up the crawl when it was the last one.
+	 */
+	public synchronized void finish() {
+		pending--;
+		if (pending == 0) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until every page that started is done.
+	 */
+	public synchronized void await() {
+		try {
+			while (pending > 0) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			System.err.println("Interrupted while waiting for the pages of the crawl");
+			Thread.currentThread().interrupt();
+		}
+	}
+}
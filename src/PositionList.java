@@ -0,0 +1,374 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A sorted set of word positions for one word in one file. Instead of boxing
+ * every position into a {@link java.util.TreeSet}, the positions are stored as
+ * the differences between neighbouring positions, and every difference is
+ * packed into as few bytes as possible (7 bits per byte, the high bit marks
+ * that more bytes follow).
+ *
+ * Positions are usually added in increasing order, which only appends to the
+ * end of the block. Adding a smaller position still works, but has to rebuild
+ * the block.
+ */
+public class PositionList {
+
+	/** The initial number of bytes to reserve for a new block. */
+	private static final int INITIAL_CAPACITY = 4;
+
+	private byte[] data;
+	private int length;
+	private int size;
+	private int last;
+
+	/**
+	 * Initializes an empty position list.
+	 */
+	public PositionList() {
+		this.data = new byte[INITIAL_CAPACITY];
+		this.length = 0;
+		this.size = 0;
+		this.last = 0;
+	}
+
+	/**
+	 * Initializes a position list with a copy of a packed block of positions
+	 * stored in part of a bigger array.
+	 *
+	 * @param block The array holding the packed positions
+	 * @param start The offset of the first byte of the block
+	 * @param end   The offset after the last byte of the block
+	 */
+	public PositionList(byte[] block, int start, int end) {
+		this.data = Arrays.copyOfRange(block, start, Math.max(end, start + INITIAL_CAPACITY));
+		this.length = end - start;
+		this.size = 0;
+		this.last = 0;
+		PrimitiveIterator.OfInt it = iterator();
+		while (it.hasNext()) {
+			this.last = it.nextInt();
+			this.size++;
+		}
+	}
+
+	/**
+	 * Add the position to this list if it is not already there.
+	 *
+	 * @param position The position to add
+	 * @return true if the position was added, false if it was already in the list
+	 */
+	public boolean add(int position) {
+		if (size == 0 || position > last) {
+			append(position);
+			return true;
+		}
+
+		int[] positions = toArray();
+		int insert = Arrays.binarySearch(positions, position);
+		if (insert >= 0) {
+			return false;
+		}
+
+		insert = -(insert + 1);
+		int[] merged = new int[positions.length + 1];
+		System.arraycopy(positions, 0, merged, 0, insert);
+		merged[insert] = position;
+		System.arraycopy(positions, insert, merged, insert + 1, positions.length - insert);
+		rebuild(merged, merged.length);
+		return true;
+	}
+
+	/**
+	 * Add every position of the other list to this list.
+	 *
+	 * @param other The position list to merge into this one
+	 */
+	public void addAll(PositionList other) {
+		if (other.size == 0) {
+			return;
+		}
+
+		if (size == 0) {
+			this.data = Arrays.copyOf(other.data, other.length);
+			this.length = other.length;
+			this.size = other.size;
+			this.last = other.last;
+			return;
+		}
+
+		PrimitiveIterator.OfInt it = other.iterator();
+		int first = it.nextInt();
+		if (first > last) {
+			// every other position is bigger, so only the first gap changes
+			int skip = readLength(other.data, 0);
+			append(first);
+			ensureCapacity(length + other.length - skip);
+			System.arraycopy(other.data, skip, data, length, other.length - skip);
+			this.length += other.length - skip;
+			this.size += other.size - 1;
+			this.last = other.last;
+			return;
+		}
+
+		int[] mine = toArray();
+		int[] theirs = other.toArray();
+		int[] merged = new int[mine.length + theirs.length];
+		int i = 0, j = 0, k = 0;
+		while (i < mine.length && j < theirs.length) {
+			if (mine[i] < theirs[j]) {
+				merged[k++] = mine[i++];
+			} else if (mine[i] > theirs[j]) {
+				merged[k++] = theirs[j++];
+			} else {
+				merged[k++] = mine[i++];
+				j++;
+			}
+		}
+		while (i < mine.length) {
+			merged[k++] = mine[i++];
+		}
+		while (j < theirs.length) {
+			merged[k++] = theirs[j++];
+		}
+		rebuild(merged, k);
+	}
+
+	/**
+	 * Check if the position is in this list.
+	 *
+	 * @param position Position to look for
+	 * @return true if the position is in the list
+	 */
+	public boolean contains(int position) {
+		if (size == 0 || position > last) {
+			return false;
+		}
+		return contains(data, 0, length, position);
+	}
+
+	/**
+	 * It will return the number of positions in this list.
+	 *
+	 * @return number of positions
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * It will return the largest position in this list.
+	 *
+	 * @return the last position, or 0 if the list is empty
+	 */
+	public int last() {
+		return last;
+	}
+
+	/**
+	 * Decode all the positions into a new sorted array.
+	 *
+	 * @return sorted array of positions
+	 */
+	public int[] toArray() {
+		int[] positions = new int[size];
+		PrimitiveIterator.OfInt it = iterator();
+		for (int i = 0; i < size; i++) {
+			positions[i] = it.nextInt();
+		}
+		return positions;
+	}
+
+	/**
+	 * Returns an iterator that decodes the positions in increasing order without
+	 * boxing them.
+	 *
+	 * @return iterator over the positions
+	 */
+	public PrimitiveIterator.OfInt iterator() {
+		return iterator(data, 0, length);
+	}
+
+	/**
+	 * Returns an iterator that decodes a packed block of positions stored in part
+	 * of a bigger array, for example in a {@link FrozenInvertedIndex}.
+	 *
+	 * @param block The array holding the packed positions
+	 * @param start The offset of the first byte of the block
+	 * @param end   The offset after the last byte of the block
+	 * @return iterator over the positions
+	 */
+	public static PrimitiveIterator.OfInt iterator(byte[] block, int start, int end) {
+		return new PrimitiveIterator.OfInt() {
+			private int offset = start;
+			private int current = 0;
+
+			@Override
+			public boolean hasNext() {
+				return offset < end;
+			}
+
+			@Override
+			public int nextInt() {
+				if (offset >= end) {
+					throw new NoSuchElementException();
+				}
+				int gap = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = block[offset++];
+					gap |= (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				current += gap;
+				return current;
+			}
+		};
+	}
+
+	/**
+	 * Returns an iterator that decodes a packed block of positions stored in part
+	 * of a buffer, for example in a mapped {@link IndexSegment}. The position of
+	 * the buffer is not changed.
+	 *
+	 * @param block The buffer holding the packed positions
+	 * @param start The offset of the first byte of the block
+	 * @param end   The offset after the last byte of the block
+	 * @return iterator over the positions
+	 */
+	public static PrimitiveIterator.OfInt iterator(ByteBuffer block, int start, int end) {
+		return new PrimitiveIterator.OfInt() {
+			private int offset = start;
+			private int current = 0;
+
+			@Override
+			public boolean hasNext() {
+				return offset < end;
+			}
+
+			@Override
+			public int nextInt() {
+				if (offset >= end) {
+					throw new NoSuchElementException();
+				}
+				int gap = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = block.get(offset++);
+					gap |= (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				current += gap;
+				return current;
+			}
+		};
+	}
+
+	/**
+	 * Check if the position is in a packed block of positions.
+	 *
+	 * @param block    The array holding the packed positions
+	 * @param start    The offset of the first byte of the block
+	 * @param end      The offset after the last byte of the block
+	 * @param position Position to look for
+	 * @return true if the position is in the block
+	 */
+	public static boolean contains(byte[] block, int start, int end, int position) {
+		PrimitiveIterator.OfInt it = iterator(block, start, end);
+		while (it.hasNext()) {
+			int current = it.nextInt();
+			if (current >= position) {
+				return current == position;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * It will return the number of bytes used by the packed positions.
+	 *
+	 * @return number of bytes
+	 */
+	public int byteLength() {
+		return length;
+	}
+
+	/**
+	 * Copy the packed positions into the array.
+	 *
+	 * @param block  The array to copy to
+	 * @param offset Where to start writing in that array
+	 */
+	public void copyTo(byte[] block, int offset) {
+		System.arraycopy(data, 0, block, offset, length);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+
+	/**
+	 * Write the gap between the position and the current last position to the end
+	 * of the block.
+	 *
+	 * @param position The position to append, must be bigger than the last one
+	 */
+	private void append(int position) {
+		ensureCapacity(length + 5);
+		int gap = position - last;
+		while ((gap & ~0x7F) != 0) {
+			data[length++] = (byte) ((gap & 0x7F) | 0x80);
+			gap >>>= 7;
+		}
+		data[length++] = (byte) gap;
+		this.last = position;
+		this.size++;
+	}
+
+	/**
+	 * Replace the whole block with the first count positions of the sorted array.
+	 *
+	 * @param positions sorted positions without duplicates
+	 * @param count     number of positions to use
+	 */
+	private void rebuild(int[] positions, int count) {
+		this.data = new byte[Math.max(INITIAL_CAPACITY, count * 2)];
+		this.length = 0;
+		this.size = 0;
+		this.last = 0;
+		for (int i = 0; i < count; i++) {
+			append(positions[i]);
+		}
+	}
+
+	/**
+	 * Make sure the block can hold at least the given number of bytes.
+	 *
+	 * @param capacity The number of bytes needed
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > data.length) {
+			data = Arrays.copyOf(data, Math.max(capacity, data.length + (data.length >> 1)));
+		}
+	}
+
+	/**
+	 * Returns the number of bytes used by the packed number at the offset.
+	 *
+	 * @param block  The packed block
+	 * @param offset Where the number starts
+	 * @return number of bytes of that number
+	 */
+	private static int readLength(byte[] block, int offset) {
+		int start = offset;
+		while (block[offset] < 0) {
+			offset++;
+		}
+		return offset - start + 1;
+	}
+}
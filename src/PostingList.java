@@ -0,0 +1,171 @@
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+/**
+ * All the documents one word appears in, kept as an array of document ids
+ * sorted in increasing order, together with the positions of the word in each
+ * of those documents.
+ */
+public class PostingList {
+
+	/** The initial number of documents to reserve for a new posting list. */
+	private static final int INITIAL_CAPACITY = 2;
+
+	private int[] documents;
+	private PositionList[] positions;
+	private int size;
+
+	/**
+	 * Initializes an empty posting list.
+	 */
+	public PostingList() {
+		this.documents = new int[INITIAL_CAPACITY];
+		this.positions = new PositionList[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Initializes a posting list with the documents and their positions.
+	 *
+	 * @param documents The document ids, sorted in increasing order
+	 * @param positions The positions of the word in each of those documents
+	 */
+	public PostingList(int[] documents, PositionList[] positions) {
+		this.documents = documents;
+		this.positions = positions;
+		this.size = documents.length;
+	}
+
+	/**
+	 * Returns the positions of the word in the document, adding an empty position
+	 * list for that document if there is none yet.
+	 *
+	 * @param document The document id
+	 * @return the position list of that document
+	 */
+	public PositionList getOrAdd(int document) {
+		int index = indexOf(document);
+		if (index < 0) {
+			index = -(index + 1);
+			insert(index, document, new PositionList());
+		}
+		return positions[index];
+	}
+
+	/**
+	 * Add the positions of the document to this posting list. If the document is
+	 * not in the list yet the given position list is stored as it is, otherwise
+	 * the positions are merged.
+	 *
+	 * @param document The document id
+	 * @param other    The positions of the word in that document
+	 */
+	public void add(int document, PositionList other) {
+		int index = indexOf(document);
+		if (index < 0) {
+			insert(-(index + 1), document, other);
+		} else {
+			positions[index].addAll(other);
+		}
+	}
+
+	/**
+	 * Returns the positions of the word in the document.
+	 *
+	 * @param document The document id
+	 * @return the position list, or null if the word is not in that document
+	 */
+	public PositionList get(int document) {
+		int index = indexOf(document);
+		return index < 0 ? null : positions[index];
+	}
+
+	/**
+	 * It will return the number of documents in this posting list.
+	 *
+	 * @return number of documents
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the document id at the given index of the list.
+	 *
+	 * @param index The index, between 0 and {@link #size()}
+	 * @return the document id
+	 */
+	public int document(int index) {
+		return documents[index];
+	}
+
+	/**
+	 * Returns the positions stored at the given index of the list.
+	 *
+	 * @param index The index, between 0 and {@link #size()}
+	 * @return the position list
+	 */
+	public PositionList positions(int index) {
+		return positions[index];
+	}
+
+	/**
+	 * Returns an iterator over the documents of this list. The list must not be
+	 * changed while the iterator is used.
+	 *
+	 * @return the postings iterator
+	 */
+	public PostingsIterator iterator() {
+		return new PostingsIterator(0, size) {
+			@Override
+			protected int documentAt(int index) {
+				return documents[index];
+			}
+
+			@Override
+			protected int frequencyAt(int index) {
+				return positions[index].size();
+			}
+
+			@Override
+			protected PrimitiveIterator.OfInt positionsAt(int index) {
+				return positions[index].iterator();
+			}
+		};
+	}
+
+	/**
+	 * Find the index of the document id, checking the end of the list first since
+	 * documents are usually added in increasing order.
+	 *
+	 * @param document The document id
+	 * @return the index of the document, or (-(insertion point) - 1) if not found
+	 */
+	private int indexOf(int document) {
+		if (size == 0 || document > documents[size - 1]) {
+			return -(size + 1);
+		}
+		return Arrays.binarySearch(documents, 0, size, document);
+	}
+
+	/**
+	 * Insert the document and its positions at the index, moving the rest of the
+	 * list back by one.
+	 *
+	 * @param index    Where to insert
+	 * @param document The document id
+	 * @param list     The positions of the word in the document
+	 */
+	private void insert(int index, int document, PositionList list) {
+		if (size == documents.length) {
+			int capacity = documents.length + (documents.length >> 1) + 1;
+			documents = Arrays.copyOf(documents, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+		}
+		System.arraycopy(documents, index, documents, index + 1, size - index);
+		System.arraycopy(positions, index, positions, index + 1, size - index);
+		documents[index] = document;
+		positions[index] = list;
+		size++;
+	}
+}
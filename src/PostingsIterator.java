@@ -0,0 +1,192 @@
+import java.util.PrimitiveIterator;
+
+/**
+ * Walks the postings of one word in increasing document id order. The
+ * postings are read by their index between a start and an end, so every index
+ * type only has to say how to read the document id and the frequency at an
+ * index.
+ */
+public abstract class PostingsIterator {
+
+	/** The document id returned once every posting has been read. */
+	public static final int NO_MORE_DOCUMENTS = Integer.MAX_VALUE;
+
+	private final int start;
+	private final int end;
+	private int index;
+
+	/**
+	 * Initializes an iterator at the first posting.
+	 *
+	 * @param start The index of the first posting
+	 * @param end   The index after the last posting
+	 */
+	protected PostingsIterator(int start, int end) {
+		this.start = start;
+		this.end = end;
+		this.index = start;
+	}
+
+	/**
+	 * Returns the document id of the posting at the index.
+	 *
+	 * @param index The index of the posting
+	 * @return the document id
+	 */
+	protected abstract int documentAt(int index);
+
+	/**
+	 * Returns the number of times the word appears in the document of the posting
+	 * at the index.
+	 *
+	 * @param index The index of the posting
+	 * @return the frequency
+	 */
+	protected abstract int frequencyAt(int index);
+
+	/**
+	 * Returns the positions of the word in the document of the posting at the
+	 * index.
+	 *
+	 * @param index The index of the posting
+	 * @return iterator over the positions in increasing order
+	 */
+	protected abstract PrimitiveIterator.OfInt positionsAt(int index);
+
+	/**
+	 * Returns the document id of the current posting.
+	 *
+	 * @return the document id, or {@link #NO_MORE_DOCUMENTS} at the end
+	 */
+	public int document() {
+		return index < end ? documentAt(index) : NO_MORE_DOCUMENTS;
+	}
+
+	/**
+	 * Returns the number of times the word appears in the current document.
+	 *
+	 * @return the frequency
+	 */
+	public int frequency() {
+		return frequencyAt(index);
+	}
+
+	/**
+	 * Returns the positions of the word in the current document. There are
+	 * {@link #frequency()} of them.
+	 *
+	 * @return iterator over the positions in increasing order
+	 */
+	public PrimitiveIterator.OfInt positions() {
+		return positionsAt(index);
+	}
+
+	/**
+	 * Returns the index of the current posting, for the index types that keep more
+	 * data per posting, like the positions.
+	 *
+	 * @return the index of the current posting
+	 */
+	protected int index() {
+		return index;
+	}
+
+	/**
+	 * Move to the next posting.
+	 *
+	 * @return the next document id, or {@link #NO_MORE_DOCUMENTS} at the end
+	 */
+	public int next() {
+		if (index < end) {
+			index++;
+		}
+		return document();
+	}
+
+	/**
+	 * Move to the first posting with a document id that is not smaller than the
+	 * target, never moving backwards. The search gallops forward from the current
+	 * posting in steps that double, and then searches the last step in halves, so
+	 * moving a short way costs only a few reads however long the postings are.
+	 *
+	 * @param target The document id to look for
+	 * @return the document id found, or {@link #NO_MORE_DOCUMENTS} at the end
+	 */
+	public int advance(int target) {
+		if (index >= end || documentAt(index) >= target) {
+			return document();
+		}
+		// documentAt(low) is smaller than the target, high is the end or not smaller
+		int low = index;
+		int step = 1;
+		int high = low + 1;
+		while (high < end && documentAt(high) < target) {
+			low = high;
+			step <<= 1;
+			high = end - low > step ? low + step : end;
+		}
+		low++;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (documentAt(middle) < target) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		index = low;
+		return document();
+	}
+
+	/**
+	 * Returns the highest score this word can add to any document, which is its
+	 * frequency divided by the word count of the document. The top-K search skips
+	 * documents using this bound, so it must never be lower than the real score.
+	 *
+	 * @return the upper bound, or infinity if the index does not know it
+	 */
+	public double maxScore() {
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * It will return the number of documents of the word.
+	 *
+	 * @return the document frequency
+	 */
+	public int cost() {
+		return end - start;
+	}
+
+	/**
+	 * Returns a new iterator over the same postings, at the first posting. Every
+	 * copy moves on its own, so the postings of a word that was looked up once
+	 * can be walked by several threads at the same time.
+	 *
+	 * @return the new iterator
+	 */
+	public PostingsIterator copy() {
+		PostingsIterator original = this;
+		return new PostingsIterator(start, end) {
+			@Override
+			protected int documentAt(int index) {
+				return original.documentAt(index);
+			}
+
+			@Override
+			protected int frequencyAt(int index) {
+				return original.frequencyAt(index);
+			}
+
+			@Override
+			protected PrimitiveIterator.OfInt positionsAt(int index) {
+				return original.positionsAt(index);
+			}
+
+			@Override
+			public double maxScore() {
+				return original.maxScore();
+			}
+		};
+	}
+}
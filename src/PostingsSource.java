@@ -0,0 +1,60 @@
+import java.util.Collection;
+
+/**
+ * An index that can hand its postings to the {@link QueryEngine}. The
+ * iterators read the index directly, so the index must not change while they
+ * are used. The thread safe indexes only use them inside their own locked
+ * searches.
+ */
+public interface PostingsSource {
+
+	/**
+	 * It will return the number of documents. Every document id is smaller than
+	 * this number.
+	 *
+	 * @return number of documents
+	 */
+	int getDocumentCount();
+
+	/**
+	 * Returns the total number of words in the document.
+	 *
+	 * @param document The document id
+	 * @return word count of that document
+	 */
+	int getWordCount(int document);
+
+	/**
+	 * Returns the word count of the document divided by the average word count of
+	 * all the documents, which the {@link ScoringModel} uses to score long
+	 * documents down.
+	 *
+	 * @param document The document id
+	 * @return the norm of that document
+	 */
+	float getNorm(int document);
+
+	/**
+	 * Returns the path of the document id.
+	 *
+	 * @param document The document id
+	 * @return the path or url of that document
+	 */
+	String getPath(int document);
+
+	/**
+	 * Returns an iterator over the postings of the word.
+	 *
+	 * @param word The word to look for
+	 * @return the postings iterator, or null if the word is not in the index
+	 */
+	PostingsIterator iterator(String word);
+
+	/**
+	 * Add an iterator for every word that starts with the prefix.
+	 *
+	 * @param prefix    The prefix to look for
+	 * @param iterators Where to add the iterators
+	 */
+	void prefixIterators(String prefix, Collection<PostingsIterator> iterators);
+}
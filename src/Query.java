@@ -0,0 +1,479 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A parsed query line. Besides the plain words, a query can have clauses that
+ * use the positions of the words in the documents:
+ *
+ * <ul>
+ * <li>a phrase in double quotes, like {@code "inverted index"}, matches the
+ * words right after each other in that order</li>
+ * <li>{@code word NEAR/k other} matches the two words at most k positions
+ * apart, in either order</li>
+ * </ul>
+ *
+ * and the boolean operators:
+ *
+ * <ul>
+ * <li>{@code word AND other} makes the words on both sides required</li>
+ * <li>{@code NOT word} leaves out every document with the word</li>
+ * <li>{@code word OR other} is the same as {@code word other}</li>
+ * </ul>
+ *
+ * A document has to have every required word and match every clause, and its
+ * match count is the number of times the clauses match plus the frequencies of
+ * the other words. A query with no required words and no clauses is the same
+ * search as before, any document with one of the plain words. Like most search
+ * boxes the operators only apply to the word next to them, there are no
+ * parentheses, and NOT before a phrase leaves the phrase out of the query.
+ */
+public class Query {
+
+	/** The operator between the two words of a proximity clause. */
+	public static final Pattern NEAR_REGEX = Pattern.compile("NEAR/(\\d{1,9})");
+
+	/** The boolean operators. */
+	private enum Operator {
+		AND, OR, NOT
+	}
+
+	private final TreeSet<String> words;
+	private final TreeSet<String> required;
+	private final TreeSet<String> excluded;
+	private final List<Clause> clauses;
+
+	/**
+	 * Initializes a query.
+	 *
+	 * @param words    The plain words
+	 * @param required The words every document must have
+	 * @param excluded The words no document may have
+	 * @param clauses  The phrase and proximity clauses
+	 */
+	public Query(TreeSet<String> words, TreeSet<String> required, TreeSet<String> excluded, List<Clause> clauses) {
+		this.words = words;
+		this.required = required;
+		this.excluded = excluded;
+		this.clauses = clauses;
+	}
+
+	/**
+	 * Initializes a query without boolean operators.
+	 *
+	 * @param words   The plain words
+	 * @param clauses The phrase and proximity clauses
+	 */
+	public Query(TreeSet<String> words, List<Clause> clauses) {
+		this(words, new TreeSet<>(), new TreeSet<>(), clauses);
+	}
+
+	/**
+	 * Initializes a query of only plain words.
+	 *
+	 * @param words The plain words
+	 */
+	public Query(TreeSet<String> words) {
+		this(words, Collections.emptyList());
+	}
+
+	/**
+	 * Clean, split and stem the query line. Lines without quotes or operators are
+	 * read exactly like before.
+	 *
+	 * @param line The query line
+	 * @return the parsed query
+	 */
+	public static Query parse(String line) {
+		return parse(line, new TextTokenizer());
+	}
+
+	/**
+	 * Clean, split and stem the query line with a tokenizer that is reused
+	 * between lines.
+	 *
+	 * @param line      The query line
+	 * @param tokenizer The tokenizer to use
+	 * @return the parsed query
+	 */
+	public static Query parse(String line, TextTokenizer tokenizer) {
+		TreeSet<String> words = new TreeSet<>();
+		if (line.indexOf('"') < 0 && line.indexOf("NEAR/") < 0 && line.indexOf("AND") < 0
+				&& line.indexOf("OR") < 0 && line.indexOf("NOT") < 0) {
+			words.addAll(stem(tokenizer, line));
+			return new Query(words);
+		}
+
+		// every part is a list of stems, an Integer for a NEAR, or an Operator
+		ArrayList<Object> parts = new ArrayList<>();
+		int quotes = 0;
+		for (int i = 0; i < line.length(); i++) {
+			if (line.charAt(i) == '"') {
+				quotes++;
+			}
+		}
+		int start = 0;
+		boolean quoted = false;
+		while (start <= line.length()) {
+			int end = line.indexOf('"', start);
+			// an unmatched last quote is ignored
+			if (end < 0 || (!quoted && quotes < 2)) {
+				end = line.length();
+			}
+			String text = line.substring(start, end);
+			if (quoted) {
+				parts.add(stem(tokenizer, text));
+				quotes -= 2;
+			} else {
+				for (String token : TextParser.split(text)) {
+					Matcher near = NEAR_REGEX.matcher(token);
+					if (near.matches()) {
+						parts.add(Integer.valueOf(near.group(1)));
+					} else if (token.equals("AND") || token.equals("OR") || token.equals("NOT")) {
+						parts.add(Operator.valueOf(token));
+					} else {
+						for (String word : stem(tokenizer, token)) {
+							parts.add(List.of(word));
+						}
+					}
+				}
+			}
+			quoted = !quoted;
+			start = end + 1;
+		}
+
+		// turn every word NEAR/k word into a clause, the words of a chain are shared
+		ArrayList<Object> items = new ArrayList<>();
+		boolean joined = false;
+		for (int i = 0; i < parts.size(); i++) {
+			Object part = parts.get(i);
+			if (part instanceof Integer) {
+				joined = false;
+			} else if (isWord(part) && i + 2 < parts.size() && parts.get(i + 1) instanceof Integer
+					&& isWord(parts.get(i + 2))) {
+				items.add(Clause.near(word(part), word(parts.get(i + 2)), (Integer) parts.get(i + 1)));
+				joined = true;
+				i++;
+			} else if (joined) {
+				joined = false;
+			} else {
+				items.add(part);
+			}
+		}
+
+		TreeSet<String> required = new TreeSet<>();
+		TreeSet<String> excluded = new TreeSet<>();
+		ArrayList<Clause> clauses = new ArrayList<>();
+		boolean require = false;
+		boolean exclude = false;
+		for (int i = 0; i < items.size(); i++) {
+			Object item = items.get(i);
+			if (item == Operator.AND) {
+				require = true;
+				continue;
+			} else if (item == Operator.NOT) {
+				exclude = true;
+				continue;
+			} else if (item == Operator.OR) {
+				continue;
+			}
+
+			boolean before = i + 1 < items.size() && items.get(i + 1) == Operator.AND;
+			if (item instanceof Clause) {
+				if (!exclude) {
+					clauses.add((Clause) item);
+				}
+			} else if (isWord(item)) {
+				if (exclude) {
+					excluded.add(word(item));
+				} else if (require || before) {
+					required.add(word(item));
+				} else {
+					words.add(word(item));
+				}
+			} else if (!exclude && ((List<?>) item).size() > 1) {
+				clauses.add(Clause.phrase(((List<?>) item).toArray(new String[0])));
+			}
+			require = false;
+			exclude = false;
+		}
+		words.removeAll(required);
+		words.removeAll(excluded);
+		return new Query(words, required, excluded, clauses);
+	}
+
+	/**
+	 * Clean, split and stem the text.
+	 *
+	 * @param tokenizer The tokenizer to use
+	 * @param text      The text
+	 * @return the stems that are not empty, in order
+	 */
+	private static List<String> stem(TextTokenizer tokenizer, String text) {
+		ArrayList<String> stems = new ArrayList<>();
+		tokenizer.reset(text);
+		while (tokenizer.next()) {
+			String word = StemCache.SHARED.stem(tokenizer.token());
+			if (!word.isEmpty()) {
+				stems.add(word);
+			}
+		}
+		return stems;
+	}
+
+	/**
+	 * Check if the part of a query line is one word outside of quotes.
+	 *
+	 * @param part The part
+	 * @return true if it is a single word
+	 */
+	private static boolean isWord(Object part) {
+		return part instanceof List && ((List<?>) part).size() == 1;
+	}
+
+	/**
+	 * Returns the word of a part that {@link #isWord(Object)}.
+	 *
+	 * @param part The part
+	 * @return the word
+	 */
+	private static String word(Object part) {
+		return (String) ((List<?>) part).get(0);
+	}
+
+	/**
+	 * It will return the plain words of the query.
+	 *
+	 * @return the plain words
+	 */
+	public TreeSet<String> getWords() {
+		return words;
+	}
+
+	/**
+	 * It will return the words every document must have.
+	 *
+	 * @return the required words
+	 */
+	public TreeSet<String> getRequired() {
+		return required;
+	}
+
+	/**
+	 * It will return the words no document may have.
+	 *
+	 * @return the excluded words
+	 */
+	public TreeSet<String> getExcluded() {
+		return excluded;
+	}
+
+	/**
+	 * It will return the phrase and proximity clauses of the query.
+	 *
+	 * @return the clauses
+	 */
+	public List<Clause> getClauses() {
+		return clauses;
+	}
+
+	/**
+	 * Check if the query needs the positions of the words.
+	 *
+	 * @return true if the query has a clause
+	 */
+	public boolean isPositional() {
+		return !clauses.isEmpty();
+	}
+
+	/**
+	 * Check if the query is only plain words, any of which a document may have.
+	 *
+	 * @return true if there are no operators and no clauses
+	 */
+	public boolean isPlain() {
+		return clauses.isEmpty() && required.isEmpty() && excluded.isEmpty();
+	}
+
+	/**
+	 * Returns every word of the query, including the words of the operators and
+	 * the clauses.
+	 *
+	 * @return all the words
+	 */
+	public TreeSet<String> getTerms() {
+		TreeSet<String> terms = new TreeSet<>(words);
+		terms.addAll(required);
+		terms.addAll(excluded);
+		for (Clause clause : clauses) {
+			Collections.addAll(terms, clause.words);
+		}
+		return terms;
+	}
+
+	/**
+	 * Check if the query has nothing to search for. A query of only excluded words
+	 * has nothing to search for.
+	 *
+	 * @return true if there are no words, no required words and no clauses
+	 */
+	public boolean isEmpty() {
+		return words.isEmpty() && required.isEmpty() && clauses.isEmpty();
+	}
+
+	/**
+	 * Returns the query as it is written in the results, the plain words in order
+	 * followed by the required words and the clauses joined by AND, and the
+	 * excluded words.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(String.join(" ", words));
+		String separator = builder.length() > 0 ? " " : "";
+		for (String word : required) {
+			builder.append(separator).append(word);
+			separator = " AND ";
+		}
+		for (Clause clause : clauses) {
+			builder.append(separator).append(clause);
+			separator = " AND ";
+		}
+		for (String word : excluded) {
+			builder.append(builder.length() > 0 ? " NOT " : "NOT ").append(word);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * A phrase or a proximity clause, and the merge of the sorted positions of its
+	 * words that counts how many times it matches a document.
+	 */
+	public static class Clause {
+		private final String[] words;
+		/** How far apart the two words may be, or 0 for a phrase. */
+		private final int distance;
+
+		/**
+		 * Initializes a clause.
+		 *
+		 * @param words    The words of the clause
+		 * @param distance The distance of a proximity clause, or 0 for a phrase
+		 */
+		private Clause(String[] words, int distance) {
+			this.words = words;
+			this.distance = distance;
+		}
+
+		/**
+		 * Returns a clause that matches the words right after each other.
+		 *
+		 * @param words The stemmed words in order
+		 * @return the phrase clause
+		 */
+		public static Clause phrase(String[] words) {
+			return new Clause(words, 0);
+		}
+
+		/**
+		 * Returns a clause that matches the two words at most the distance apart.
+		 *
+		 * @param left     The first word
+		 * @param right    The second word
+		 * @param distance The most positions between them, at least 1
+		 * @return the proximity clause
+		 */
+		public static Clause near(String left, String right, int distance) {
+			return new Clause(new String[] { left, right }, Math.max(1, distance));
+		}
+
+		/**
+		 * It will return the words of the clause in order.
+		 *
+		 * @return the words
+		 */
+		public String[] getWords() {
+			return words;
+		}
+
+		/**
+		 * Count how many times the clause matches a document. The positions of word i
+		 * of the clause are the first sizes[first + i] numbers of positions[first +
+		 * i], sorted in increasing order.
+		 *
+		 * @param positions The positions of every word
+		 * @param sizes     The number of positions of every word
+		 * @param first     The index of the first word of this clause
+		 * @return the number of matches
+		 */
+		public int matches(int[][] positions, int[] sizes, int first) {
+			return distance == 0 ? phrase(positions, sizes, first) : near(positions, sizes, first);
+		}
+
+		/**
+		 * Count the positions of the first word that are followed by all the other
+		 * words. The positions of every word are only walked once.
+		 */
+		private int phrase(int[][] positions, int[] sizes, int first) {
+			int[] cursor = new int[words.length];
+			int[] head = positions[first];
+			int count = 0;
+			outer: for (int h = 0; h < sizes[first]; h++) {
+				for (int i = 1; i < words.length; i++) {
+					int[] list = positions[first + i];
+					int size = sizes[first + i];
+					int target = head[h] + i;
+					int c = cursor[i];
+					while (c < size && list[c] < target) {
+						c++;
+					}
+					cursor[i] = c;
+					if (c == size) {
+						break outer;
+					}
+					if (list[c] != target) {
+						continue outer;
+					}
+				}
+				count++;
+			}
+			return count;
+		}
+
+		/**
+		 * Count the positions of the first word that have the second word at most the
+		 * distance before or after them. The positions of every word are only walked
+		 * once, besides the few inside the distance.
+		 */
+		private int near(int[][] positions, int[] sizes, int first) {
+			int[] left = positions[first];
+			int[] right = positions[first + 1];
+			int size = sizes[first + 1];
+			int c = 0;
+			int count = 0;
+			for (int l = 0; l < sizes[first]; l++) {
+				int position = left[l];
+				while (c < size && right[c] < position - distance) {
+					c++;
+				}
+				for (int r = c; r < size && right[r] <= position + distance; r++) {
+					if (right[r] != position) {
+						count++;
+						break;
+					}
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public String toString() {
+			if (distance == 0) {
+				return '"' + String.join(" ", words) + '"';
+			}
+			return words[0] + " NEAR/" + distance + " " + words[1];
+		}
+	}
+}
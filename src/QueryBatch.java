@@ -0,0 +1,221 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Searches many queries at once. Query files often repeat the same words and
+ * prefixes on many lines, and searching them one line at a time looks up the
+ * same words and reads the same postings again for every line. A batch first
+ * reads the postings of every distinct word once, adding up the frequencies of
+ * all the words a prefix expands to by document, and then adds up the words of
+ * every query. The work of both steps can be spread over a {@link WorkQueue}.
+ *
+ * <p>
+ * The results of every query are the same as
+ * {@link QueryEngine#search(PostingsSource, Query, boolean, int)} with all the
+ * results. Queries with boolean operators or clauses, and every query while a
+ * {@link ScoringModel} is set, are searched by the {@link QueryEngine} as part
+ * of the batch, since adding up their scores in another order could change
+ * them.
+ * </p>
+ */
+public class QueryBatch {
+
+	/** The arrays of each thread, reused between the words and queries. */
+	private static final ThreadLocal<QueryBatch> BATCHES = ThreadLocal.withInitial(QueryBatch::new);
+
+	/** The total frequency of every document id, zero between uses. */
+	private int[] frequencies;
+	/** The document ids with a frequency that is not zero. */
+	private int[] documents;
+
+	/**
+	 * Initializes empty arrays.
+	 */
+	private QueryBatch() {
+		this.frequencies = new int[0];
+		this.documents = new int[64];
+	}
+
+	/**
+	 * It will search the index for every query and return all the results of each
+	 * of them. The index must not change during the search.
+	 *
+	 * @param source   The index to search
+	 * @param queries  The queries
+	 * @param exact    True for an exact search, false for a partial search
+	 * @param queue    The work queue to share the work with, or null to search in
+	 *                 this thread only
+	 * @param settings The scoring model and work queue of the index
+	 * @return the sorted results of every query, in the order of the queries
+	 */
+	public static ArrayList<ArrayList<Result>> search(PostingsSource source, List<Query> queries, boolean exact,
+			WorkQueue queue, SearchSettings settings) {
+		int limit = source.getDocumentCount();
+		boolean shared = settings.getScoringModel() == null;
+
+		// give every distinct word of the plain queries a number
+		HashMap<String, Integer> numbers = new HashMap<>();
+		ArrayList<String> words = new ArrayList<>();
+		int[][] wordsOf = new int[queries.size()][];
+		for (int i = 0; i < wordsOf.length; i++) {
+			Query query = queries.get(i);
+			if (!shared || !query.isPlain()) {
+				continue;
+			}
+			int[] numbered = new int[query.getWords().size()];
+			int count = 0;
+			for (String word : query.getWords()) {
+				Integer number = numbers.get(word);
+				if (number == null) {
+					number = words.size();
+					numbers.put(word, number);
+					words.add(word);
+				}
+				numbered[count++] = number;
+			}
+			wordsOf[i] = numbered;
+		}
+
+		// read the postings of every word once
+		int[][] documentsOf = new int[words.size()][];
+		int[][] frequenciesOf = new int[words.size()][];
+		run(words.size(), queue, word -> {
+			BATCHES.get().postings(source, words.get(word), exact, limit, documentsOf, frequenciesOf, word);
+		});
+
+		// and add them up for every query
+		ArrayList<ArrayList<Result>> results = new ArrayList<>(Collections.nCopies(queries.size(), null));
+		run(queries.size(), queue, i -> {
+			ArrayList<Result> resultList;
+			if (wordsOf[i] == null) {
+				resultList = QueryEngine.search(source, queries.get(i), exact, 0, settings);
+			} else {
+				resultList = BATCHES.get().results(source, wordsOf[i], limit, documentsOf, frequenciesOf);
+			}
+			results.set(i, resultList);
+		});
+		return results;
+	}
+
+	/**
+	 * It will add up the frequencies of every word the query word stands for by
+	 * document and keep them in increasing document id order.
+	 *
+	 * @param source        The index to search
+	 * @param word          The query word
+	 * @param exact         True for the word only, false for every word starting
+	 *                      with it
+	 * @param limit         The document count when the search started
+	 * @param documentsOf   Where to put the document ids of every word
+	 * @param frequenciesOf Where to put the frequencies of every word
+	 * @param number        The number of the word
+	 */
+	private void postings(PostingsSource source, String word, boolean exact, int limit, int[][] documentsOf,
+			int[][] frequenciesOf, int number) {
+		ArrayList<PostingsIterator> iterators = new ArrayList<>();
+		if (exact) {
+			PostingsIterator iterator = source.iterator(word);
+			if (iterator != null) {
+				iterators.add(iterator);
+			}
+		} else {
+			source.prefixIterators(word, iterators);
+		}
+
+		if (frequencies.length < limit) {
+			frequencies = new int[Math.max(limit, frequencies.length * 2)];
+		}
+		int count = 0;
+		for (PostingsIterator iterator : iterators) {
+			for (int document = iterator.document(); document < limit; document = iterator.next()) {
+				if (frequencies[document] == 0) {
+					if (count == documents.length) {
+						documents = Arrays.copyOf(documents, count * 2);
+					}
+					documents[count++] = document;
+				}
+				frequencies[document] += iterator.frequency();
+			}
+		}
+		if (iterators.size() > 1) {
+			Arrays.sort(documents, 0, count);
+		}
+
+		int[] found = Arrays.copyOf(documents, count);
+		int[] totals = new int[count];
+		for (int i = 0; i < count; i++) {
+			totals[i] = frequencies[found[i]];
+			frequencies[found[i]] = 0;
+		}
+		documentsOf[number] = found;
+		frequenciesOf[number] = totals;
+	}
+
+	/**
+	 * It will add up the frequencies of the words of a query by document and
+	 * return a result for every document found.
+	 *
+	 * @param source        The index to search
+	 * @param words         The numbers of the query words
+	 * @param limit         The document count when the search started
+	 * @param documentsOf   The document ids of every word
+	 * @param frequenciesOf The frequencies of every word
+	 * @return sorted Arraylist of result object
+	 */
+	private ArrayList<Result> results(PostingsSource source, int[] words, int limit, int[][] documentsOf,
+			int[][] frequenciesOf) {
+		if (frequencies.length < limit) {
+			frequencies = new int[Math.max(limit, frequencies.length * 2)];
+		}
+		int count = 0;
+		for (int word : words) {
+			int[] found = documentsOf[word];
+			int[] totals = frequenciesOf[word];
+			for (int i = 0; i < found.length; i++) {
+				int document = found[i];
+				if (frequencies[document] == 0) {
+					if (count == documents.length) {
+						documents = Arrays.copyOf(documents, count * 2);
+					}
+					documents[count++] = document;
+				}
+				frequencies[document] += totals[i];
+			}
+		}
+		if (words.length > 1) {
+			Arrays.sort(documents, 0, count);
+		}
+
+		// in document id order like the query engine, so equal results keep its order
+		ArrayList<Result> resultList = new ArrayList<Result>(count);
+		for (int i = 0; i < count; i++) {
+			int document = documents[i];
+			resultList.add(new Result(source.getWordCount(document), frequencies[document], source.getPath(document)));
+			frequencies[document] = 0;
+		}
+		Collections.sort(resultList);
+		return resultList;
+	}
+
+	/**
+	 * It will run the task for every number from 0 up to the count, on the work
+	 * queue if there is one.
+	 *
+	 * @param count The number of tasks
+	 * @param queue The work queue to share the tasks with, or null
+	 * @param task  The task to run for every number
+	 */
+	private static void run(int count, WorkQueue queue, IntConsumer task) {
+		if (queue != null) {
+			queue.invokeAll(count, task);
+		} else {
+			for (int i = 0; i < count; i++) {
+				task.accept(i);
+			}
+		}
+	}
+}
@@ -5,59 +5,77 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.TreeMap;
-import java.util.TreeSet;
-
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 public class QueryBuilder implements QueryBuilderInterface {
 
 	private final TreeMap<String, ArrayList<Result>> results;
-	private final InvertedIndex index;
+	private final InvertedIndexInterface index;
 
 	/**
 	 * The constructor of QueryBuilder and initialize result and index data
 	 * structure.
+	 * 
+	 * @param index The index to search, either an {@link InvertedIndex} or a
+	 *              {@link FrozenInvertedIndex}
 	 */
-	public QueryBuilder(InvertedIndex index) {
+	public QueryBuilder(InvertedIndexInterface index) {
 		this.results = new TreeMap<String, ArrayList<Result>>();
 		this.index = index;
 	}
 
 	/**
-	 * Stem the result and choose the exactSearch or partialSearch.
+	 * Stem the result and choose the exactSearch or partialSearch. A line can also
+	 * have phrases in double quotes and NEAR/k clauses, see {@link Query}.
 	 * 
 	 * @param index      The InvertedIndex data structure
 	 * @param path       The path of file that need to search
 	 * @param exactCheck Check it is exactSearch or partialSearch.
 	 */
 	public void addSearchResult(Path path, boolean exactCheck) throws FileNotFoundException, IOException {
-		SnowballStemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
+		TextTokenizer tokenizer = new TextTokenizer();
 		try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
 			String contentLine;
 			while ((contentLine = br.readLine()) != null) {
-				TreeSet<String> words = new TreeSet<>();
+				Query query = Query.parse(contentLine, tokenizer);
+				String queryLine = query.toString();
 
-				for (String s : TextParser.parse(contentLine)) {
-					String word = stemmer.stem(s).toString();
-					if (!word.isEmpty()) {
-						words.add(word);
-					}
+				if (query.isEmpty() || results.containsKey(queryLine)) {
+					continue;
+				} else {
+					results.put(queryLine, index.search(query, exactCheck, 0));
 				}
+			}
+		}
+	}
 
-				String queryLine = String.join(" ", words);
+	/**
+	 * Stem every line of the file and search the queries as one batch.
+	 * 
+	 * @param path       The path of file that need to search
+	 * @param exactCheck Check it is exactSearch or partialSearch.
+	 */
+	public void addBatchSearchResult(Path path, boolean exactCheck) throws FileNotFoundException, IOException {
+		TextTokenizer tokenizer = new TextTokenizer();
+		LinkedHashMap<String, Query> queries = new LinkedHashMap<>();
+		try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String contentLine;
+			while ((contentLine = br.readLine()) != null) {
+				Query query = Query.parse(contentLine, tokenizer);
+				String queryLine = query.toString();
 
-				if (words.isEmpty() || results.containsKey(queryLine)) {
-					continue;
-				} else {
-					if (exactCheck) {
-						results.put(queryLine, index.exactSearch(words));
-					} else {
-						results.put(queryLine, index.partialSearch(words));
-					}
+				if (!query.isEmpty() && !results.containsKey(queryLine)) {
+					queries.putIfAbsent(queryLine, query);
 				}
 			}
 		}
+
+		ArrayList<ArrayList<Result>> found = index.search(new ArrayList<>(queries.values()), exactCheck, null);
+		int i = 0;
+		for (String queryLine : queries.keySet()) {
+			results.put(queryLine, found.get(i++));
+		}
 	}
 
 	/**
@@ -11,6 +11,17 @@ public interface QueryBuilderInterface {
 	 * @throws IOException reader cann't find the right path
 	 */
 	public void addSearchResult(Path path, boolean exactCheck) throws FileNotFoundException, IOException;
+
+	/**
+	 * It will read every query of the file first and then search them all as one
+	 * batch, so the postings of a word or prefix that many queries share are only
+	 * read once. The results are the same as {@link #addSearchResult(Path, boolean)}.
+	 * @param path The path of file 
+	 * @param exactCheck Cheek it is partial search or exactedsearch
+	 * @throws FileNotFoundException couldn't find right file path
+	 * @throws IOException reader cann't find the right path
+	 */
+	public void addBatchSearchResult(Path path, boolean exactCheck) throws FileNotFoundException, IOException;
 	
 	/**
 	 * write the result to the JSON file. 
@@ -0,0 +1,352 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache of search results in front of an index. It can
+ * be handed to the query builders and the servlets in place of the index, and
+ * every other method goes straight to the index.
+ *
+ * <p>
+ * A result is found by the stemmed query as it is written in the results, the
+ * search mode, the number of results asked for and the scoring model of the
+ * {@link SearchSettings} of the index, which is told apart by its equals
+ * method. When the cache is full the least recently used result is dropped. Every result
+ * belongs to the {@link InvertedIndexInterface#getGeneration()} of the index
+ * it was found at, and once the index moves on to a new generation all the
+ * cached results are dropped, so a search never sees a result older than the
+ * index.
+ * </p>
+ *
+ * <p>
+ * The same result list is returned to every search that finds it, so the lists
+ * must not be changed.
+ * </p>
+ */
+public class QueryCache implements InvertedIndexInterface {
+
+	/** The default number of results to keep. */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final InvertedIndexInterface index;
+	private final int capacity;
+	/** The cached results in the order they were used, guarded by itself. */
+	private final LinkedHashMap<Key, ArrayList<Result>> results;
+	/** The generation of the index the cached results were found at. */
+	private long generation;
+
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder invalidations;
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param index    The index to search
+	 * @param capacity The most results to keep
+	 */
+	public QueryCache(InvertedIndexInterface index, int capacity) {
+		this.index = index;
+		this.capacity = Math.max(1, capacity);
+		this.results = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, ArrayList<Result>> eldest) {
+				return size() > QueryCache.this.capacity;
+			}
+		};
+		this.generation = index.getGeneration();
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.invalidations = new LongAdder();
+	}
+
+	/**
+	 * It will return the cached results of the query, or search the index and
+	 * keep the results if they are not in the cache.
+	 *
+	 * @param query The parsed query
+	 * @param exact True for an exact search, false for a partial search
+	 * @param k     The number of results to return, or 0 or less for all
+	 * @return Arraylist of the best k result objects
+	 */
+	@Override
+	public ArrayList<Result> search(Query query, boolean exact, int k) {
+		Key key = key(query, exact, k);
+		// read before the search, so the results are at least this new
+		long current = index.getGeneration();
+		ArrayList<Result> found = lookup(key, current);
+		if (found == null) {
+			found = index.search(query, exact, k);
+			store(key, current, found);
+		}
+		return found;
+	}
+
+	/**
+	 * It will return the cached results of the queries, and search the index for
+	 * the other queries as one batch.
+	 *
+	 * @param queries The parsed queries
+	 * @param exact   True for an exact search, false for a partial search
+	 * @param queue   The work queue to share the work with, or null
+	 * @return Arraylist of the sorted results of every query, in query order
+	 */
+	@Override
+	public ArrayList<ArrayList<Result>> search(List<Query> queries, boolean exact, WorkQueue queue) {
+		long current = index.getGeneration();
+		ArrayList<ArrayList<Result>> found = new ArrayList<>(queries.size());
+		ArrayList<Query> missing = new ArrayList<>();
+		for (Query query : queries) {
+			ArrayList<Result> cached = lookup(key(query, exact, 0), current);
+			found.add(cached);
+			if (cached == null) {
+				missing.add(query);
+			}
+		}
+
+		if (!missing.isEmpty()) {
+			ArrayList<ArrayList<Result>> searched = index.search(missing, exact, queue);
+			int next = 0;
+			for (int i = 0; i < found.size(); i++) {
+				if (found.get(i) == null) {
+					ArrayList<Result> result = searched.get(next++);
+					store(key(queries.get(i), exact, 0), current, result);
+					found.set(i, result);
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the key of a search in the cache with the scoring model the index
+	 * uses right now.
+	 *
+	 * @param query The parsed query
+	 * @param exact True for an exact search, false for a partial search
+	 * @param k     The number of results asked for
+	 * @return the key
+	 */
+	private Key key(Query query, boolean exact, int k) {
+		return new Key(query.toString(), exact, Math.max(0, k), index.getSearchSettings().getScoringModel());
+	}
+
+	/**
+	 * It will return the cached results of the key if they were found at the
+	 * generation, and count the hit or the miss. The cache is emptied first if the
+	 * index moved on to a newer generation.
+	 *
+	 * @param key     The key of the search
+	 * @param current The generation of the index before the search
+	 * @return the cached results, or null for a miss
+	 */
+	private ArrayList<Result> lookup(Key key, long current) {
+		synchronized (results) {
+			if (current > generation) {
+				results.clear();
+				generation = current;
+				invalidations.increment();
+			} else if (current == generation) {
+				ArrayList<Result> cached = results.get(key);
+				if (cached != null) {
+					hits.increment();
+					return cached;
+				}
+			}
+		}
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Keep the results found at the generation, unless the cache has moved on to a
+	 * newer one while they were searched.
+	 *
+	 * @param key     The key of the search
+	 * @param current The generation of the index before the search
+	 * @param found   The results
+	 */
+	private void store(Key key, long current, ArrayList<Result> found) {
+		synchronized (results) {
+			if (current == generation) {
+				results.put(key, found);
+			}
+		}
+	}
+
+	@Override
+	public ArrayList<Result> search(TreeSet<String> arrayline, boolean exact, int k) {
+		return search(new Query(arrayline), exact, k);
+	}
+
+	@Override
+	public ArrayList<Result> exactSearch(TreeSet<String> arrayline) {
+		return search(new Query(arrayline), true, 0);
+	}
+
+	@Override
+	public ArrayList<Result> partialSearch(TreeSet<String> arrayline) {
+		return search(new Query(arrayline), false, 0);
+	}
+
+	@Override
+	public boolean contains(String word) {
+		return index.contains(word);
+	}
+
+	@Override
+	public boolean contains(String word, String location) {
+		return index.contains(word, location);
+	}
+
+	@Override
+	public boolean contains(String word, String location, int position) {
+		return index.contains(word, location, position);
+	}
+
+	@Override
+	public long getGeneration() {
+		return index.getGeneration();
+	}
+
+	@Override
+	public SearchSettings getSearchSettings() {
+		return index.getSearchSettings();
+	}
+
+	@Override
+	public void setSearchSettings(SearchSettings settings) {
+		index.setSearchSettings(settings);
+	}
+
+	@Override
+	public void toJSON(Path output) throws IOException {
+		index.toJSON(output);
+	}
+
+	@Override
+	public void toLocationJSON(Path output) throws IOException {
+		index.toLocationJSON(output);
+	}
+
+	/**
+	 * It will return the index behind the cache, for example to add pages to it.
+	 *
+	 * @return the index the cache searches
+	 */
+	public InvertedIndexInterface getIndex() {
+		return index;
+	}
+
+	/**
+	 * It will return the most results kept by this cache.
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * It will return the number of results in the cache right now.
+	 *
+	 * @return number of cached results
+	 */
+	public int size() {
+		synchronized (results) {
+			return results.size();
+		}
+	}
+
+	/**
+	 * It will return the number of searches that found their results in the
+	 * cache.
+	 *
+	 * @return number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * It will return the number of searches that had to search the index.
+	 *
+	 * @return number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * It will return the number of times the cache was emptied because the index
+	 * changed.
+	 *
+	 * @return number of invalidations
+	 */
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	/**
+	 * It will return the share of searches that were hits.
+	 *
+	 * @return the hit rate between 0 and 1, or 0 before any search
+	 */
+	public double getHitRate() {
+		long hit = hits.sum();
+		long total = hit + misses.sum();
+		return total == 0 ? 0 : (double) hit / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Query cache: %d hits, %d misses, %.2f%% hit rate, %d invalidations, %d of %d results",
+				getHits(), getMisses(), getHitRate() * 100, getInvalidations(), size(), getCapacity());
+	}
+
+	/**
+	 * The key of a search in the cache.
+	 */
+	private static class Key {
+		private final String query;
+		private final boolean exact;
+		private final int k;
+		/** The scoring model, or null for the matches divided by the word count. */
+		private final ScoringModel scoring;
+
+		/**
+		 * @param query   The stemmed query as it is written in the results
+		 * @param exact   True for an exact search, false for a partial search
+		 * @param k       The number of results asked for, or 0 for all
+		 * @param scoring The scoring model of the search, or null
+		 */
+		public Key(String query, boolean exact, int k, ScoringModel scoring) {
+			this.query = query;
+			this.exact = exact;
+			this.k = k;
+			this.scoring = scoring;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return exact == key.exact && k == key.k && query.equals(key.query) && Objects.equals(scoring, key.scoring);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(query, exact, k, scoring);
+		}
+	}
+}
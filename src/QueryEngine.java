@@ -0,0 +1,740 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * Runs searches document at a time. The postings iterators of every query word
+ * are kept in a heap by their current document id, so every matching document
+ * is visited once with the matches of all the words added up, and the
+ * documents come out in increasing id order. The document ids and match counts
+ * go into primitive arrays that each thread reuses, and a {@link Result} is
+ * only created for a document that is returned.
+ *
+ * <p>
+ * A top-K search keeps only the best K results in a bounded heap and uses the
+ * MaxScore method to skip documents that can not make it into the heap. The
+ * words are sorted by the highest score they can add to any document. Once the
+ * heap is full, the words whose bounds add up to less than the worst score in
+ * the heap can not bring in a new result on their own, so candidates only come
+ * from the other words, and the low words are only checked for those
+ * candidates while the best score a candidate could still reach is high
+ * enough.
+ * </p>
+ *
+ * <p>
+ * A query with phrase or proximity clauses only returns the documents that
+ * have every word of every clause, which are found by moving the iterators of
+ * those words to the largest document id any of them is on until they all
+ * agree. Only then are the positions of the clause words decoded, and every
+ * clause is checked with one merge over the sorted positions. The required
+ * words of a boolean query are intersected the same way, starting from the
+ * word in the fewest documents.
+ * </p>
+ *
+ * <p>
+ * The {@link SearchSettings} of the index are passed with every search. With
+ * a {@link ScoringModel} in them, the documents are scored by the model. A
+ * search of plain words then adds up the score of every posting into arrays
+ * by document id, word by word, since the score is not the matches divided by
+ * the word count that the top-K bounds are based on.
+ * </p>
+ *
+ * <p>
+ * With a {@link WorkQueue} in the settings, a query of plain words that stands for many
+ * words of the index is searched by every thread of the queue instead, see
+ * {@link ParallelSearch}.
+ * </p>
+ */
+public class QueryEngine {
+
+	/** The engine of each thread, so the arrays are reused between searches. */
+	private static final ThreadLocal<QueryEngine> ENGINES = ThreadLocal.withInitial(QueryEngine::new);
+
+	/** No iterators, for a search without excluded words. */
+	private static final PostingsIterator[] NONE = new PostingsIterator[0];
+
+	private final ArrayList<PostingsIterator> terms;
+	private PostingsIterator[] heap;
+	private int[] heapDocuments;
+	private int[] documents;
+	private int[] matches;
+	/** The matches and the score of every document id during a scored search. */
+	private int[] frequencies;
+	private double[] scores;
+
+	/**
+	 * Initializes an engine with empty arrays.
+	 */
+	public QueryEngine() {
+		this.terms = new ArrayList<>();
+		this.heap = new PostingsIterator[16];
+		this.heapDocuments = new int[16];
+		this.documents = new int[64];
+		this.matches = new int[64];
+		this.frequencies = new int[0];
+		this.scores = new double[0];
+	}
+
+	/**
+	 * It will search the index and return only the best results.
+	 *
+	 * @param source    The index to search
+	 * @param arrayline The query words
+	 * @param exact     True for an exact search, false for a partial search
+	 * @param k         The number of results to return, or 0 or less for all
+	 * @param settings  The scoring model and work queue of the index
+	 * @return the best k results in sorted order
+	 */
+	public static ArrayList<Result> search(PostingsSource source, TreeSet<String> arrayline, boolean exact, int k,
+			SearchSettings settings) {
+		QueryEngine engine = ENGINES.get();
+		ArrayList<PostingsIterator> terms = engine.terms;
+		terms.clear();
+		for (String word : arrayline) {
+			if (exact) {
+				PostingsIterator iterator = source.iterator(word);
+				if (iterator != null) {
+					terms.add(iterator);
+				}
+			} else {
+				source.prefixIterators(word, terms);
+			}
+		}
+		ScoringModel scoring = settings.getScoringModel();
+		WorkQueue queue = settings.getWorkQueue();
+		if (queue != null && terms.size() >= settings.getSplit()) {
+			// the words are looked up once, and every range walks copies of them
+			ArrayList<Result> results = ParallelSearch.search(source, terms, k, scoring, queue);
+			terms.clear();
+			return results;
+		}
+		if (scoring != null) {
+			return engine.search(source, terms, NONE, k, scoring);
+		}
+		return k > 0 ? engine.search(source, terms, k) : engine.search(source, terms);
+	}
+
+	/**
+	 * It will search the index with a query that may have boolean operators and
+	 * phrase and proximity clauses. A query of only plain words is the same as
+	 * {@link #search(PostingsSource, TreeSet, boolean, int, SearchSettings)} with
+	 * its words.
+	 *
+	 * @param source The index to search
+	 * @param query  The query
+	 * @param exact  True for an exact search, false to match the words of the
+	 *               query as prefixes
+	 * @param k        The number of results to return, or 0 or less for all
+	 * @param settings The scoring model and work queue of the index
+	 * @return the best k results in sorted order
+	 */
+	public static ArrayList<Result> search(PostingsSource source, Query query, boolean exact, int k,
+			SearchSettings settings) {
+		if (query.isPlain()) {
+			return search(source, query.getWords(), exact, k, settings);
+		}
+		ArrayList<Result> resultList = ENGINES.get().search(source, query, exact, settings.getScoringModel());
+		if (k > 0 && resultList.size() > k) {
+			resultList.subList(k, resultList.size()).clear();
+		}
+		return resultList;
+	}
+
+	/**
+	 * It will search the index for the documents that contain any of the words.
+	 *
+	 * @param source    The index to search
+	 * @param arrayline The query words
+	 * @param settings  The scoring model and work queue of the index
+	 * @return sorted Arraylist of result object
+	 */
+	public static ArrayList<Result> exactSearch(PostingsSource source, TreeSet<String> arrayline,
+			SearchSettings settings) {
+		return search(source, arrayline, true, 0, settings);
+	}
+
+	/**
+	 * It will search the index for the documents that contain any word starting
+	 * with one of the query words.
+	 *
+	 * @param source    The index to search
+	 * @param arrayline The query words
+	 * @param settings  The scoring model and work queue of the index
+	 * @return sorted Arraylist of result object
+	 */
+	public static ArrayList<Result> partialSearch(PostingsSource source, TreeSet<String> arrayline,
+			SearchSettings settings) {
+		return search(source, arrayline, false, 0, settings);
+	}
+
+	/**
+	 * It will add up the matches of the iterators document by document and return
+	 * a result for every document found. Documents with an id that is not smaller
+	 * than the document count of the source when the search started are skipped.
+	 *
+	 * @param source The index the iterators came from
+	 * @param terms  The iterators of the query words, cleared when done
+	 * @return sorted Arraylist of result object
+	 */
+	public ArrayList<Result> search(PostingsSource source, ArrayList<PostingsIterator> terms) {
+		return search(source, terms, NONE);
+	}
+
+	/**
+	 * It will add up the matches of the iterators document by document and return
+	 * a result for every document found that none of the excluded iterators has.
+	 *
+	 * @param source   The index the iterators came from
+	 * @param terms    The iterators of the query words, cleared when done
+	 * @param excluded The iterators of the excluded words
+	 * @return sorted Arraylist of result object
+	 */
+	public ArrayList<Result> search(PostingsSource source, ArrayList<PostingsIterator> terms,
+			PostingsIterator[] excluded) {
+		int limit = source.getDocumentCount();
+		int size = 0;
+		if (heap.length < terms.size()) {
+			heap = new PostingsIterator[terms.size()];
+			heapDocuments = new int[terms.size()];
+		}
+		for (PostingsIterator term : terms) {
+			int document = term.document();
+			if (document < limit) {
+				heap[size] = term;
+				heapDocuments[size] = document;
+				size++;
+			}
+		}
+		terms.clear();
+		for (int i = (size >>> 1) - 1; i >= 0; i--) {
+			siftDown(i, size);
+		}
+
+		int count = 0;
+		while (size > 0) {
+			int document = heapDocuments[0];
+			int total = 0;
+			do {
+				PostingsIterator top = heap[0];
+				total += top.frequency();
+				int next = top.next();
+				if (next < limit) {
+					heapDocuments[0] = next;
+				} else {
+					size--;
+					heap[0] = heap[size];
+					heapDocuments[0] = heapDocuments[size];
+					heap[size] = null;
+				}
+				siftDown(0, size);
+			} while (size > 0 && heapDocuments[0] == document);
+
+			if (excluded.length > 0 && contains(excluded, document)) {
+				continue;
+			}
+			if (count == documents.length) {
+				documents = Arrays.copyOf(documents, count * 2);
+				matches = Arrays.copyOf(matches, count * 2);
+			}
+			documents[count] = document;
+			matches[count] = total;
+			count++;
+		}
+
+		ArrayList<Result> resultList = new ArrayList<Result>(count);
+		for (int i = 0; i < count; i++) {
+			int document = documents[i];
+			resultList.add(new Result(source.getWordCount(document), matches[i], source.getPath(document)));
+		}
+
+		Collections.sort(resultList);
+		return resultList;
+	}
+
+	/**
+	 * It will add up the scores of the postings of one iterator after another and
+	 * return the best k documents that none of the excluded iterators has.
+	 *
+	 * @param source   The index the iterators came from
+	 * @param terms    The iterators of the query words, cleared when done
+	 * @param excluded The iterators of the excluded words
+	 * @param k        The number of results to keep, or 0 or less for all
+	 * @param scoring  The scoring model
+	 * @return the best k results in sorted order
+	 */
+	public ArrayList<Result> search(PostingsSource source, ArrayList<PostingsIterator> terms,
+			PostingsIterator[] excluded, int k, ScoringModel scoring) {
+		int limit = source.getDocumentCount();
+		if (scores.length < limit) {
+			frequencies = new int[Math.max(limit, scores.length * 2)];
+			scores = new double[frequencies.length];
+		}
+		int count = 0;
+		for (PostingsIterator term : terms) {
+			double weight = scoring.weight(term.cost(), limit);
+			for (int document = term.document(); document < limit; document = term.next()) {
+				int frequency = term.frequency();
+				if (frequencies[document] == 0) {
+					if (count == documents.length) {
+						documents = Arrays.copyOf(documents, count * 2);
+					}
+					documents[count++] = document;
+				}
+				frequencies[document] += frequency;
+				scores[document] += scoring.score(weight, frequency, source.getNorm(document));
+			}
+		}
+		terms.clear();
+
+		Arrays.sort(documents, 0, count);
+		PriorityQueue<Result> best = new PriorityQueue<>(k > 0 ? Math.min(k, 1024) : 16, Collections.reverseOrder());
+		for (int i = 0; i < count; i++) {
+			int document = documents[i];
+			int frequency = frequencies[document];
+			double score = scores[document];
+			frequencies[document] = 0;
+			scores[document] = 0;
+			if (excluded.length > 0 && contains(excluded, document)) {
+				continue;
+			}
+			Result result = new RankedResult(source.getWordCount(document), frequency, source.getPath(document), score);
+			if (k <= 0 || best.size() < k) {
+				best.add(result);
+			} else if (result.compareTo(best.peek()) < 0) {
+				best.poll();
+				best.add(result);
+			}
+		}
+
+		ArrayList<Result> resultList = new ArrayList<Result>(best);
+		Collections.sort(resultList);
+		return resultList;
+	}
+
+	/**
+	 * It will add up the matches of the iterators and keep the best k documents,
+	 * skipping the documents that can not score high enough.
+	 *
+	 * @param source The index the iterators came from
+	 * @param terms  The iterators of the query words, cleared when done
+	 * @param k      The number of results to keep
+	 * @return the best k results in sorted order
+	 */
+	public ArrayList<Result> search(PostingsSource source, ArrayList<PostingsIterator> terms, int k) {
+		int limit = source.getDocumentCount();
+		terms.sort(Comparator.comparingDouble(PostingsIterator::maxScore));
+		int termCount = terms.size();
+		PostingsIterator[] sorted = terms.toArray(new PostingsIterator[termCount]);
+		terms.clear();
+
+		// bounds[i] is the most the words 0 to i can add to the score of a document
+		double[] bounds = new double[termCount];
+		double sum = 0;
+		for (int i = 0; i < termCount; i++) {
+			sum += sorted[i].maxScore();
+			bounds[i] = sum;
+		}
+
+		PriorityQueue<Result> best = new PriorityQueue<>(Math.min(k, 1024), Collections.reverseOrder());
+		double threshold = -1;
+		int essential = 0;
+		int size = fill(sorted, essential, limit);
+
+		while (size > 0) {
+			int document = heapDocuments[0];
+			int total = 0;
+			do {
+				PostingsIterator top = heap[0];
+				total += top.frequency();
+				int next = top.next();
+				if (next < limit) {
+					heapDocuments[0] = next;
+				} else {
+					size--;
+					heap[0] = heap[size];
+					heapDocuments[0] = heapDocuments[size];
+					heap[size] = null;
+				}
+				siftDown(0, size);
+			} while (size > 0 && heapDocuments[0] == document);
+
+			int words = source.getWordCount(document);
+			boolean skipped = false;
+			for (int i = essential - 1; i >= 0; i--) {
+				if ((double) total / words + bounds[i] < threshold) {
+					skipped = true;
+					break;
+				}
+				PostingsIterator term = sorted[i];
+				if (term.document() < document) {
+					term.advance(document);
+				}
+				if (term.document() == document) {
+					total += term.frequency();
+				}
+			}
+			if (skipped) {
+				continue;
+			}
+
+			double score = (double) total / words;
+			if (best.size() < k) {
+				best.add(new Result(words, total, source.getPath(document)));
+			} else if (score >= threshold) {
+				Result result = new Result(words, total, source.getPath(document));
+				if (result.compareTo(best.peek()) < 0) {
+					best.poll();
+					best.add(result);
+				}
+			}
+
+			if (best.size() == k && best.peek().getScore() > threshold) {
+				threshold = best.peek().getScore();
+				int moved = essential;
+				while (essential < termCount && bounds[essential] < threshold) {
+					essential++;
+				}
+				if (essential != moved) {
+					size = fill(sorted, essential, limit);
+				}
+			}
+		}
+
+		ArrayList<Result> resultList = new ArrayList<Result>(best);
+		Collections.sort(resultList);
+		return resultList;
+	}
+
+	/**
+	 * It will return a result for every document that has all the required words,
+	 * matches all the clauses and has none of the excluded words. A word of a
+	 * partial search is every word starting with it, so its frequency and
+	 * positions in a document are those of all these words together.
+	 *
+	 * <p>
+	 * The required and clause words are intersected in order of their document
+	 * frequency. The rarest word proposes a document and every other word is
+	 * moved to it, so the postings of the common words are mostly skipped over
+	 * by {@link PostingsIterator#advance(int)}. If one of them is past that
+	 * document, the rarest word moves on to where it is.
+	 * </p>
+	 *
+	 * @param source  The index to search
+	 * @param query   The query
+	 * @param exact   True for an exact search, false for a partial search
+	 * @param scoring The scoring model, or null for the matches divided by the
+	 *                word count
+	 * @return sorted Arraylist of result object
+	 */
+	public ArrayList<Result> search(PostingsSource source, Query query, boolean exact, ScoringModel scoring) {
+		ArrayList<Result> resultList = new ArrayList<Result>();
+
+		// the words of the clauses in order, and then the required words
+		ArrayList<PostingsIterator[]> slots = new ArrayList<>();
+		for (Query.Clause clause : query.getClauses()) {
+			for (String word : clause.getWords()) {
+				slots.add(iterators(source, word, exact));
+			}
+		}
+		int clauseSlots = slots.size();
+		for (String word : query.getRequired()) {
+			slots.add(iterators(source, word, exact));
+		}
+		for (PostingsIterator[] slot : slots) {
+			if (slot.length == 0) {
+				return resultList;
+			}
+		}
+
+		terms.clear();
+		for (String word : query.getExcluded()) {
+			Collections.addAll(terms, iterators(source, word, exact));
+		}
+		PostingsIterator[] excluded = terms.toArray(new PostingsIterator[terms.size()]);
+		terms.clear();
+		for (String word : query.getWords()) {
+			Collections.addAll(terms, iterators(source, word, exact));
+		}
+		if (slots.isEmpty()) {
+			return scoring == null ? search(source, terms, excluded) : search(source, terms, excluded, 0, scoring);
+		}
+		PostingsIterator[] plain = terms.toArray(new PostingsIterator[terms.size()]);
+		terms.clear();
+
+		// the plan, from the rarest word to the most common
+		Integer[] order = new Integer[slots.size()];
+		long[] costs = new long[slots.size()];
+		for (int slot = 0; slot < order.length; slot++) {
+			order[slot] = slot;
+			for (PostingsIterator iterator : slots.get(slot)) {
+				costs[slot] += iterator.cost();
+			}
+		}
+		Arrays.sort(order, Comparator.comparingLong(slot -> costs[slot]));
+
+		int limit = source.getDocumentCount();
+		double[][] weights = new double[slots.size()][];
+		double[] plainWeights = null;
+		double[] clauseWeights = new double[query.getClauses().size()];
+		if (scoring != null) {
+			for (int slot = 0; slot < weights.length; slot++) {
+				weights[slot] = weights(slots.get(slot), scoring, limit);
+			}
+			plainWeights = weights(plain, scoring, limit);
+			// a clause is scored like a word in as few documents as its rarest word
+			int first = 0;
+			for (int c = 0; c < clauseWeights.length; c++) {
+				int words = query.getClauses().get(c).getWords().length;
+				long rarest = Long.MAX_VALUE;
+				for (int slot = first; slot < first + words; slot++) {
+					rarest = Math.min(rarest, costs[slot]);
+				}
+				clauseWeights[c] = scoring.weight((int) Math.min(rarest, limit), limit);
+				first += words;
+			}
+		}
+		int[][] positions = new int[clauseSlots][16];
+		int[] sizes = new int[clauseSlots];
+		int document = 0;
+		while (true) {
+			// move every word to the same document
+			int i = 0;
+			while (i < order.length && document < limit) {
+				int found = advance(slots.get(order[i]), document);
+				if (found == document) {
+					i++;
+				} else {
+					document = found;
+					i = i == 0 ? 1 : 0;
+				}
+			}
+			if (document >= limit) {
+				break;
+			}
+
+			boolean matched = !contains(excluded, document);
+			float norm = matched && scoring != null ? source.getNorm(document) : 0;
+			int total = 0;
+			double score = 0;
+			int first = 0;
+			for (int c = 0; c < clauseWeights.length && matched; c++) {
+				int words = query.getClauses().get(c).getWords().length;
+				for (int slot = first; slot < first + words; slot++) {
+					positions[slot] = positions(slots.get(slot), document, positions[slot], sizes, slot);
+				}
+				int count = query.getClauses().get(c).matches(positions, sizes, first);
+				matched = count > 0;
+				total += count;
+				if (scoring != null) {
+					score += scoring.score(clauseWeights[c], count, norm);
+				}
+				first += words;
+			}
+
+			if (matched) {
+				for (int slot = clauseSlots; slot < slots.size(); slot++) {
+					PostingsIterator[] iterators = slots.get(slot);
+					for (int j = 0; j < iterators.length; j++) {
+						if (iterators[j].document() == document) {
+							total += iterators[j].frequency();
+							if (scoring != null) {
+								score += scoring.score(weights[slot][j], iterators[j].frequency(), norm);
+							}
+						}
+					}
+				}
+				for (int j = 0; j < plain.length; j++) {
+					PostingsIterator term = plain[j];
+					if (term.document() < document) {
+						term.advance(document);
+					}
+					if (term.document() == document) {
+						total += term.frequency();
+						if (scoring != null) {
+							score += scoring.score(plainWeights[j], term.frequency(), norm);
+						}
+					}
+				}
+				int words = source.getWordCount(document);
+				String path = source.getPath(document);
+				resultList.add(scoring == null ? new Result(words, total, path) : new RankedResult(words, total, path, score));
+			}
+			document++;
+		}
+
+		Collections.sort(resultList);
+		return resultList;
+	}
+
+	/**
+	 * Returns the iterators of a query word, which for a partial search are the
+	 * iterators of every word starting with it.
+	 *
+	 * @param source The index to search
+	 * @param word   The query word
+	 * @param exact  True for an exact search, false for a partial search
+	 * @return the iterators, which may be none
+	 */
+	private static PostingsIterator[] iterators(PostingsSource source, String word, boolean exact) {
+		if (exact) {
+			PostingsIterator iterator = source.iterator(word);
+			return iterator == null ? NONE : new PostingsIterator[] { iterator };
+		}
+		ArrayList<PostingsIterator> iterators = new ArrayList<>();
+		source.prefixIterators(word, iterators);
+		return iterators.toArray(new PostingsIterator[iterators.size()]);
+	}
+
+	/**
+	 * Returns the weight of the word of every iterator.
+	 *
+	 * @param iterators The iterators
+	 * @param scoring   The scoring model
+	 * @param limit     The document count when the search started
+	 * @return the weights, in the order of the iterators
+	 */
+	private static double[] weights(PostingsIterator[] iterators, ScoringModel scoring, int limit) {
+		double[] weights = new double[iterators.length];
+		for (int i = 0; i < iterators.length; i++) {
+			weights[i] = scoring.weight(iterators[i].cost(), limit);
+		}
+		return weights;
+	}
+
+	/**
+	 * Check if one of the iterators has the document, moving them to it.
+	 *
+	 * @param iterators The iterators
+	 * @param document  The document id, not smaller than any before
+	 * @return true if an iterator is on the document
+	 */
+	private static boolean contains(PostingsIterator[] iterators, int document) {
+		for (PostingsIterator iterator : iterators) {
+			if (iterator.document() < document) {
+				iterator.advance(document);
+			}
+			if (iterator.document() == document) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Move the iterators of one required or clause word to the first document that is not
+	 * smaller than the target.
+	 *
+	 * @param iterators The iterators of the word
+	 * @param target    The document id to look for
+	 * @return the smallest document id the iterators are on
+	 */
+	private static int advance(PostingsIterator[] iterators, int target) {
+		int smallest = PostingsIterator.NO_MORE_DOCUMENTS;
+		for (PostingsIterator iterator : iterators) {
+			int document = iterator.document();
+			if (document < target) {
+				document = iterator.advance(target);
+			}
+			smallest = Math.min(smallest, document);
+		}
+		return smallest;
+	}
+
+	/**
+	 * Decode the positions of one clause word in the document. The iterators of
+	 * the word are all on or after the document.
+	 *
+	 * @param iterators The iterators of the word
+	 * @param document  The document id
+	 * @param buffer    Where to decode the positions to, if it is large enough
+	 * @param sizes     Where to write the number of positions
+	 * @param slot      The index of the word in the sizes
+	 * @return the sorted positions, in the buffer or a larger array
+	 */
+	private static int[] positions(PostingsIterator[] iterators, int document, int[] buffer, int[] sizes, int slot) {
+		int size = 0;
+		int words = 0;
+		for (PostingsIterator iterator : iterators) {
+			if (iterator.document() != document) {
+				continue;
+			}
+			int frequency = iterator.frequency();
+			if (size + frequency > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(size + frequency, buffer.length * 2));
+			}
+			PrimitiveIterator.OfInt it = iterator.positions();
+			while (it.hasNext()) {
+				buffer[size++] = it.nextInt();
+			}
+			words++;
+		}
+		if (words > 1) {
+			Arrays.sort(buffer, 0, size);
+		}
+		sizes[slot] = size;
+		return buffer;
+	}
+
+	/**
+	 * Put the iterators from the first one on that still have documents into the
+	 * heap.
+	 *
+	 * @param iterators The iterators
+	 * @param first     The index of the first iterator to put in the heap
+	 * @param limit     The document count when the search started
+	 * @return the number of iterators in the heap
+	 */
+	private int fill(PostingsIterator[] iterators, int first, int limit) {
+		if (heap.length < iterators.length) {
+			heap = new PostingsIterator[iterators.length];
+			heapDocuments = new int[iterators.length];
+		}
+		Arrays.fill(heap, null);
+		int size = 0;
+		for (int i = first; i < iterators.length; i++) {
+			int document = iterators[i].document();
+			if (document < limit) {
+				heap[size] = iterators[i];
+				heapDocuments[size] = document;
+				size++;
+			}
+		}
+		for (int i = (size >>> 1) - 1; i >= 0; i--) {
+			siftDown(i, size);
+		}
+		return size;
+	}
+
+	/**
+	 * Move the iterator at the index down the heap until its document id is not
+	 * larger than the document ids of its children.
+	 *
+	 * @param index The index in the heap
+	 * @param size  The number of iterators in the heap
+	 */
+	private void siftDown(int index, int size) {
+		PostingsIterator iterator = heap[index];
+		int document = heapDocuments[index];
+		while (true) {
+			int child = 2 * index + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && heapDocuments[child + 1] < heapDocuments[child]) {
+				child++;
+			}
+			if (heapDocuments[child] >= document) {
+				break;
+			}
+			heap[index] = heap[child];
+			heapDocuments[index] = heapDocuments[child];
+			index = child;
+		}
+		heap[index] = iterator;
+		heapDocuments[index] = document;
+	}
+}
@@ -0,0 +1,25 @@
+/**
+ * A result with a score given by a {@link ScoringModel} instead of the matches
+ * divided by the word count.
+ */
+public class RankedResult extends Result {
+	private final double score;
+
+	/**
+	 * Initializes the result.
+	 *
+	 * @param totalWord The total word of the file
+	 * @param matchWord total match word
+	 * @param path      The path of the file
+	 * @param score     The score of the file
+	 */
+	public RankedResult(int totalWord, int matchWord, String path, double score) {
+		super(totalWord, matchWord, path);
+		this.score = score;
+	}
+
+	@Override
+	public double getScore() {
+		return score;
+	}
+}
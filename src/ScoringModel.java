@@ -0,0 +1,41 @@
+/**
+ * A way of ranking the documents of a search. The score of a document is the
+ * sum of the scores of the query words it has, and the score of one word only
+ * depends on numbers the indexes keep ready, so scoring a posting is a few
+ * arithmetic operations:
+ *
+ * <ul>
+ * <li>the weight of the word, computed once per search from its document
+ * frequency</li>
+ * <li>the frequency of the word in the document</li>
+ * <li>the norm of the document, its word count divided by the average word
+ * count, see {@link PostingsSource#getNorm(int)}</li>
+ * </ul>
+ *
+ * Without a model the score is the matches divided by the word count of the
+ * document, which is what the JSON results use. Every index has its own
+ * model, see {@link SearchSettings}. The {@link QueryCache} tells models apart
+ * by their equals method, so a model with parameters should compare them
+ * there.
+ */
+public interface ScoringModel {
+
+	/**
+	 * Returns the weight of a word for one search.
+	 *
+	 * @param documentFrequency The number of documents with the word
+	 * @param documentCount     The number of documents in the index
+	 * @return the weight of the word
+	 */
+	public double weight(int documentFrequency, int documentCount);
+
+	/**
+	 * Returns the score a word adds to a document.
+	 *
+	 * @param weight    The weight of the word
+	 * @param frequency The number of times the word is in the document
+	 * @param norm      The norm of the document
+	 * @return the score
+	 */
+	public double score(double weight, int frequency, float norm);
+}
@@ -4,19 +4,48 @@ import org.eclipse.jetty.servlet.ServletHolder;
 
 public class SearchServer {
 	
-	//public static final int PORT = 8080;
+	/** The port the server listens on when no valid port is given. */
+	public static final int DEFAULT_PORT = 8080;
+
+	/** The number of results shown for a search when no page size is given. */
+	public static final int DEFAULT_PAGE_SIZE = 10;
 	
 	
 
-	public static void startServer(ThreadSafeInvertedIndex threadSafe,int PORT) throws Exception {
-		// TODO Auto-generated method stub
+	public static void startServer(InvertedIndexInterface index,int PORT) throws Exception {
+		startServer(index, PORT, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Start the web server with the search servlets.
+	 * 
+	 * @param index    The index to search
+	 * @param PORT     The port to listen on
+	 * @param pageSize The most results to show for a search, or 0 or less for all
+	 * @throws Exception if the server can not start
+	 */
+	public static void startServer(InvertedIndexInterface index, int PORT, int pageSize) throws Exception {
+		startServer(index, PORT, pageSize, false);
+	}
+
+	/**
+	 * Start the web server with the search servlets.
+	 * 
+	 * @param index    The index to search
+	 * @param PORT     The port to listen on
+	 * @param pageSize The most results to show for a search, or 0 or less for all
+	 * @param virtual  True to crawl the seeds sent to the server with virtual threads
+	 * @throws Exception if the server can not start
+	 */
+	public static void startServer(InvertedIndexInterface index, int PORT, int pageSize, boolean virtual)
+			throws Exception {
 		
 		Server server = new Server(PORT);
 
 		ServletHandler handler = new ServletHandler();
 		
-		handler.addServletWithMapping(new ServletHolder(new SearchServlet(threadSafe)), "/simple");
-		handler.addServletWithMapping(new ServletHolder(new BulmaSearchServlet(threadSafe)), "/bulma");
+		handler.addServletWithMapping(new ServletHolder(new SearchServlet(index, pageSize, virtual)), "/simple");
+		handler.addServletWithMapping(new ServletHolder(new BulmaSearchServlet(index, pageSize)), "/bulma");
 		handler.addServletWithMapping(new ServletHolder(new CookieIndexServlet()), "/history");
 		handler.addServletWithMapping(new ServletHolder(new CookieConfigServlet()), "/clear");
 		
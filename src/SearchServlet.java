@@ -3,7 +3,6 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.servlet.ServletException;
@@ -15,7 +14,6 @@ import org.apache.commons.text.StringEscapeUtils;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 // More XSS Prevention:
 // https://www.owasp.org/index.php/XSS_(Cross_Site_Scripting)_Prevention_Cheat_Sheet
@@ -27,17 +25,36 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer;
 public class SearchServlet extends HttpServlet {
 	private static final String TITLE = "Messages";
 	private static Logger log = Log.getRootLogger();
-	private final ThreadSafeInvertedIndex threadSafe;
+	private final InvertedIndexInterface index;
 	private String url;
 	private WorkQueue queue;
 	private ConcurrentLinkedQueue<String> messages;
 	private boolean check;
+	private final int pageSize;
 
-	public SearchServlet(ThreadSafeInvertedIndex threadSafe) {
+	public SearchServlet(InvertedIndexInterface index) {
+		this(index, SearchServer.DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * @param index    The index to search
+	 * @param pageSize The most results to show for a search, or 0 or less for all
+	 */
+	public SearchServlet(InvertedIndexInterface index, int pageSize) {
+		this(index, pageSize, false);
+	}
+
+	/**
+	 * @param index    The index to search
+	 * @param pageSize The most results to show for a search, or 0 or less for all
+	 * @param virtual  True to crawl new seeds with a virtual thread for every page
+	 */
+	public SearchServlet(InvertedIndexInterface index, int pageSize, boolean virtual) {
 		super();
-		this.threadSafe = threadSafe;
+		this.index = index;
+		this.pageSize = pageSize;
 		messages = new ConcurrentLinkedQueue<>();
-		queue = new WorkQueue(10);
+		queue = new WorkQueue(10, virtual);
 		url = "";
 	}
 
@@ -59,33 +76,27 @@ public class SearchServlet extends HttpServlet {
 		
 		if (!url.trim().isEmpty()) {
 //			URL newurl = new URL(url);
-			try {
-				URL newurl = new URL(url);
-				WebCrawler wc = new WebCrawler(queue, threadSafe);
-				wc.craw(newurl, 50);
-			} catch (Exception e) {
-				System.out.println("invalid url!! ");
+			// a cache in front of the index still lets the index be crawled into
+			InvertedIndexInterface target = index instanceof QueryCache ? ((QueryCache) index).getIndex() : index;
+			if (target instanceof ThreadSafeInvertedIndex || target instanceof ConcurrentInvertedIndex) {
+				try {
+					URL newurl = new URL(url);
+					WebCrawler wc = new WebCrawler(queue, (WritableIndexInterface) target);
+					wc.craw(newurl, 50);
+				} catch (Exception e) {
+					System.out.println("invalid url!! ");
+				}
+			} else {
+				System.out.println("This index can not be changed, not crawling " + url);
 			}
 		}
 
 		// Keep in mind multiple threads may access at once
 
-		SnowballStemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
-
 		for (String message : messages) {
-			TreeSet<String> words = new TreeSet<>();
-			for (String s : TextParser.parse(message)) {
-				String word = stemmer.stem(s).toString();
-				if (!word.isEmpty()) {
-					words.add(word);
-				}
-			}
-			ArrayList<Result> results;
-			if (check == true) {
-				results = threadSafe.partialSearch(words);
-			} else {
-				results = threadSafe.exactSearch(words);
-			}
+			// the messages are escaped, but the quotes of a phrase are needed
+			Query query = Query.parse(StringEscapeUtils.unescapeHtml4(message));
+			ArrayList<Result> results = index.search(query, !check, pageSize);
 			out.printf("<a> %s</a >%n<br>", message);
 			for (Result x : results) {
 				String path = x.getPath();
@@ -0,0 +1,84 @@
+/**
+ * How an index runs its searches: the {@link ScoringModel} of the results, and
+ * the {@link WorkQueue} a broad search of plain words is split over, see
+ * {@link ParallelSearch}. Every index keeps its own settings and hands them to
+ * the {@link QueryEngine} with every search, so indexes with different models
+ * can be searched in one program. The settings never change, a new one is
+ * made for every change.
+ */
+public class SearchSettings {
+
+	/** The default number of words a query must stand for before it is split. */
+	public static final int DEFAULT_SPLIT = 256;
+
+	/** Matches by word count, in one thread. */
+	public static final SearchSettings DEFAULT = new SearchSettings(null, null, DEFAULT_SPLIT);
+
+	private final ScoringModel scoring;
+	private final WorkQueue queue;
+	private final int split;
+
+	/**
+	 * Initializes the settings.
+	 *
+	 * @param scoring The scoring model, or null for the default score, the
+	 *                matches divided by the word count, which the JSON results
+	 *                use
+	 * @param queue   The work queue, or null to search every query in one thread
+	 * @param split   The fewest words a query must stand for to be split
+	 */
+	public SearchSettings(ScoringModel scoring, WorkQueue queue, int split) {
+		this.scoring = scoring;
+		this.queue = queue;
+		this.split = Math.max(2, split);
+	}
+
+	/**
+	 * It will return the scoring model of the searches.
+	 *
+	 * @return the model, or null for the default score
+	 */
+	public ScoringModel getScoringModel() {
+		return scoring;
+	}
+
+	/**
+	 * It will return the work queue broad searches are split over.
+	 *
+	 * @return the work queue, or null to never split a search
+	 */
+	public WorkQueue getWorkQueue() {
+		return queue;
+	}
+
+	/**
+	 * It will return the fewest words a query must stand for before its search
+	 * is split. A short prefix of a partial search can stand for thousands.
+	 *
+	 * @return the number of words
+	 */
+	public int getSplit() {
+		return split;
+	}
+
+	/**
+	 * Returns these settings with another scoring model.
+	 *
+	 * @param scoring The model, or null for the default score
+	 * @return the new settings
+	 */
+	public SearchSettings withScoringModel(ScoringModel scoring) {
+		return new SearchSettings(scoring, queue, split);
+	}
+
+	/**
+	 * Returns these settings with searches split over another work queue.
+	 *
+	 * @param queue The work queue, or null to search every query in one thread
+	 * @param split The fewest words a query must stand for to be split
+	 * @return the new settings
+	 */
+	public SearchSettings withWorkQueue(WorkQueue queue, int split) {
+		return new SearchSettings(scoring, queue, split);
+	}
+}
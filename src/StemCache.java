@@ -0,0 +1,155 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import opennlp.tools.stemmer.Stemmer;
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * A bounded, thread-safe cache of English stems in front of
+ * {@link SnowballStemmer}. Every thread stems its misses with its own stemmer,
+ * since a stemmer is not thread safe.
+ *
+ * <p>
+ * The cache keeps two generations of words. New stems go into the recent
+ * generation, and once it holds half the capacity it becomes the older
+ * generation and the previous older one is dropped. A hit in the older
+ * generation is copied back into the recent one, so the frequent words stay
+ * while rare words age out, without keeping any order per entry.
+ * </p>
+ */
+public class StemCache {
+
+	/** The default number of words to keep. */
+	public static final int DEFAULT_CAPACITY = 65536;
+
+	/** The cache shared by the builders, the query builders and the servlets. */
+	public static final StemCache SHARED = new StemCache(DEFAULT_CAPACITY);
+
+	/** The stemmer of each thread. */
+	private static final ThreadLocal<Stemmer> STEMMERS = ThreadLocal
+			.withInitial(() -> new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH));
+
+	private volatile int capacity;
+	private volatile ConcurrentHashMap<String, String> recent;
+	private volatile ConcurrentHashMap<String, String> older;
+
+	private final LongAdder hits;
+	private final LongAdder misses;
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param capacity The most words to keep
+	 */
+	public StemCache(int capacity) {
+		this.capacity = Math.max(2, capacity);
+		this.recent = new ConcurrentHashMap<>();
+		this.older = new ConcurrentHashMap<>();
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+	}
+
+	/**
+	 * It will return the stem of the word, stemming it only if it is not in the
+	 * cache.
+	 *
+	 * @param word The cleaned word
+	 * @return the stem of the word
+	 */
+	public String stem(CharSequence word) {
+		String key = word.toString();
+		ConcurrentHashMap<String, String> current = recent;
+		String stem = current.get(key);
+		if (stem != null) {
+			hits.increment();
+			return stem;
+		}
+
+		stem = older.get(key);
+		if (stem != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+			stem = STEMMERS.get().stem(key).toString();
+		}
+		current.put(key, stem);
+		if (current.size() >= capacity / 2) {
+			rotate(current);
+		}
+		return stem;
+	}
+
+	/**
+	 * Make the full recent generation the older one.
+	 *
+	 * @param full The recent generation that is full
+	 */
+	private synchronized void rotate(ConcurrentHashMap<String, String> full) {
+		if (recent == full) {
+			older = full;
+			recent = new ConcurrentHashMap<>();
+		}
+	}
+
+	/**
+	 * Change the most words to keep. It takes effect as the generations rotate.
+	 *
+	 * @param capacity The most words to keep
+	 */
+	public void setCapacity(int capacity) {
+		this.capacity = Math.max(2, capacity);
+	}
+
+	/**
+	 * It will return the most words kept by this cache.
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * It will return the number of words in the cache right now.
+	 *
+	 * @return number of cached words, counting a word in both generations twice
+	 */
+	public int size() {
+		return recent.size() + older.size();
+	}
+
+	/**
+	 * It will return the number of lookups that found the stem in the cache.
+	 *
+	 * @return number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * It will return the number of lookups that had to run the stemmer.
+	 *
+	 * @return number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * It will return the share of lookups that were hits.
+	 *
+	 * @return the hit rate between 0 and 1, or 0 before any lookup
+	 */
+	public double getHitRate() {
+		long hit = hits.sum();
+		long total = hit + misses.sum();
+		return total == 0 ? 0 : (double) hit / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Stem cache: %d hits, %d misses, %.2f%% hit rate, %d of %d words", getHits(),
+				getMisses(), getHitRate() * 100, size(), getCapacity());
+	}
+}
@@ -0,0 +1,311 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact, immutable dictionary of sorted words. The number of a word in
+ * sorted order is its ordinal, which the frozen index uses to find the postings
+ * of the word, and all the words with the same prefix have ordinals next to
+ * each other.
+ *
+ * <p>
+ * The words are front coded in blocks of {@link #BLOCK_SIZE}: the first word
+ * of a block is stored in full, and every other word only stores how many
+ * leading characters it shares with the word before it and the characters
+ * after those. Stemmed words share long prefixes, so this takes a fraction of
+ * the memory of one {@link String} per word. A lookup is a binary search over
+ * the first words of the blocks, read in place, followed by a scan of one
+ * block, and the ordinal range of a prefix is two such lookups. Nothing is
+ * allocated besides one buffer per lookup.
+ * </p>
+ */
+public class TermDictionary implements Iterable<String> {
+
+	/** The number of words in a block. */
+	public static final int BLOCK_SIZE = 16;
+
+	/** Every block, one word after another. */
+	private final char[] data;
+	/** Where every block starts in the data. */
+	private final int[] blockStart;
+	private final int size;
+	/** The length of the longest word. */
+	private final int maxLength;
+
+	/**
+	 * Initializes the dictionary with the words.
+	 *
+	 * @param words The words, sorted and without duplicates
+	 */
+	public TermDictionary(Collection<String> words) {
+		int blocks = (words.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		char[] data = new char[64];
+		int[] blockStart = new int[blocks];
+		int length = 0;
+		int longest = 0;
+		int ordinal = 0;
+		String previous = "";
+		for (String word : words) {
+			int shared = 0;
+			if (ordinal % BLOCK_SIZE == 0) {
+				blockStart[ordinal / BLOCK_SIZE] = length;
+			} else {
+				int limit = Math.min(previous.length(), word.length());
+				while (shared < limit && previous.charAt(shared) == word.charAt(shared)) {
+					shared++;
+				}
+			}
+			int suffix = word.length() - shared;
+			if (length + suffix + 4 > data.length) {
+				data = Arrays.copyOf(data, Math.max(data.length * 2, length + suffix + 4));
+			}
+			length = writeLength(data, length, shared);
+			length = writeLength(data, length, suffix);
+			word.getChars(shared, word.length(), data, length);
+			length += suffix;
+			longest = Math.max(longest, word.length());
+			previous = word;
+			ordinal++;
+		}
+		this.data = Arrays.copyOf(data, length);
+		this.blockStart = blockStart;
+		this.size = ordinal;
+		this.maxLength = longest;
+	}
+
+	/**
+	 * Initializes the dictionary with the words.
+	 *
+	 * @param words The words, sorted and without duplicates
+	 */
+	public TermDictionary(String[] words) {
+		this(Arrays.asList(words));
+	}
+
+	/**
+	 * It will return the number of words.
+	 *
+	 * @return number of words
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the word with the ordinal.
+	 *
+	 * @param ordinal The ordinal, between 0 and {@link #size()}
+	 * @return the word
+	 */
+	public String get(int ordinal) {
+		if (ordinal < 0 || ordinal >= size) {
+			throw new IndexOutOfBoundsException("Ordinal " + ordinal + " of " + size);
+		}
+		char[] word = new char[maxLength];
+		int offset = blockStart[ordinal / BLOCK_SIZE];
+		int length = 0;
+		for (int i = ordinal % BLOCK_SIZE; i >= 0; i--) {
+			int shared = readLength(data, offset);
+			offset += lengthSize(shared);
+			int suffix = readLength(data, offset);
+			offset += lengthSize(suffix);
+			System.arraycopy(data, offset, word, shared, suffix);
+			offset += suffix;
+			length = shared + suffix;
+		}
+		return new String(word, 0, length);
+	}
+
+	/**
+	 * Find the ordinal of the word.
+	 *
+	 * @param word The word to look for
+	 * @return the ordinal of the word, or (-(insertion point) - 1) if it is not in
+	 *         the dictionary, like {@link Arrays#binarySearch(Object[], Object)}
+	 */
+	public int find(String word) {
+		int ordinal = search(word, false, false);
+		if (search(word, false, true) > ordinal) {
+			return ordinal;
+		}
+		return -(ordinal + 1);
+	}
+
+	/**
+	 * Returns the ordinal of the first word that is not smaller than the prefix.
+	 * Every word starting with the prefix is at or after this ordinal.
+	 *
+	 * @param prefix The prefix to look for
+	 * @return ordinal of the first word starting with the prefix, if there is one
+	 */
+	public int prefixStart(String prefix) {
+		return search(prefix, false, false);
+	}
+
+	/**
+	 * Returns the ordinal after the last word starting with the prefix.
+	 *
+	 * @param prefix The prefix to look for
+	 * @return ordinal after the last word starting with the prefix
+	 */
+	public int prefixEnd(String prefix) {
+		return search(prefix, true, true);
+	}
+
+	/**
+	 * Returns the ordinal of the first word that is not smaller than the key, or
+	 * larger than it if after is true. If prefix is true, a word is compared as if
+	 * it were cut to the length of the key.
+	 *
+	 * @param key    The key to look for
+	 * @param prefix True to compare only the start of every word
+	 * @param after  True to skip the words equal to the key
+	 * @return the ordinal found, or {@link #size()} if every word is smaller
+	 */
+	private int search(String key, boolean prefix, boolean after) {
+		// the last block whose first word comes before the ordinal we look for
+		int low = 0;
+		int high = blockStart.length - 1;
+		int block = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int offset = blockStart[middle];
+			int shared = readLength(data, offset);
+			offset += lengthSize(shared);
+			int length = readLength(data, offset);
+			offset += lengthSize(length);
+			int compare = compare(data, offset, length, key, prefix);
+			if (compare < 0 || (after && compare == 0)) {
+				block = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		if (block < 0) {
+			return 0;
+		}
+
+		char[] word = new char[maxLength];
+		int offset = blockStart[block];
+		int ordinal = block * BLOCK_SIZE;
+		int end = Math.min(size, ordinal + BLOCK_SIZE);
+		for (; ordinal < end; ordinal++) {
+			int shared = readLength(data, offset);
+			offset += lengthSize(shared);
+			int suffix = readLength(data, offset);
+			offset += lengthSize(suffix);
+			System.arraycopy(data, offset, word, shared, suffix);
+			offset += suffix;
+			int compare = compare(word, 0, shared + suffix, key, prefix);
+			if (compare > 0 || (!after && compare == 0)) {
+				return ordinal;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Compare the characters of a word to the key in the order of
+	 * {@link String#compareTo(String)}.
+	 *
+	 * @param chars  The array holding the word
+	 * @param start  Where the word starts
+	 * @param length The length of the word
+	 * @param key    The key
+	 * @param prefix True to compare the word as if it were cut to the length of
+	 *               the key
+	 * @return negative, zero or positive like {@link String#compareTo(String)}
+	 */
+	private static int compare(char[] chars, int start, int length, String key, boolean prefix) {
+		int limit = Math.min(length, key.length());
+		for (int i = 0; i < limit; i++) {
+			int difference = chars[start + i] - key.charAt(i);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		if (prefix && length >= key.length()) {
+			return 0;
+		}
+		return length - key.length();
+	}
+
+	/**
+	 * Write a length as one character if it is below 2^15, or two otherwise.
+	 *
+	 * @param data   Where to write
+	 * @param offset Where to start
+	 * @param length The length
+	 * @return the offset after the length
+	 */
+	private static int writeLength(char[] data, int offset, int length) {
+		if (length < 0x8000) {
+			data[offset++] = (char) length;
+		} else {
+			data[offset++] = (char) (0x8000 | (length >>> 15));
+			data[offset++] = (char) (length & 0x7FFF);
+		}
+		return offset;
+	}
+
+	/**
+	 * Read a length written by {@link #writeLength(char[], int, int)}.
+	 *
+	 * @param data   Where to read
+	 * @param offset Where the length starts
+	 * @return the length
+	 */
+	private static int readLength(char[] data, int offset) {
+		char first = data[offset];
+		if (first < 0x8000) {
+			return first;
+		}
+		return ((first & 0x7FFF) << 15) | data[offset + 1];
+	}
+
+	/**
+	 * Returns the number of characters used to write the length.
+	 *
+	 * @param length The length
+	 * @return 1 or 2
+	 */
+	private static int lengthSize(int length) {
+		return length < 0x8000 ? 1 : 2;
+	}
+
+	/**
+	 * Returns the words in order, decoding every block only once.
+	 *
+	 * @return iterator over the words
+	 */
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			private final char[] word = new char[maxLength];
+			private int ordinal = 0;
+			private int offset = 0;
+
+			@Override
+			public boolean hasNext() {
+				return ordinal < size;
+			}
+
+			@Override
+			public String next() {
+				if (ordinal >= size) {
+					throw new NoSuchElementException();
+				}
+				int shared = readLength(data, offset);
+				offset += lengthSize(shared);
+				int suffix = readLength(data, offset);
+				offset += lengthSize(suffix);
+				System.arraycopy(data, offset, word, shared, suffix);
+				offset += suffix;
+				ordinal++;
+				return new String(word, 0, shared + suffix);
+			}
+		};
+	}
+}
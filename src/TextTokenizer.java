@@ -0,0 +1,197 @@
+import java.util.Locale;
+
+/**
+ * Splits text into the same cleaned, lowercase words as
+ * {@link TextParser#parse(String)} in a single scan over the characters.
+ * Words made only of ASCII characters are cleaned and lowercased in place into
+ * a reusable buffer. A word with any other character is passed to
+ * {@link TextParser#parse(String)} on its own, which is safe because the
+ * whitespace between words is never changed by the Unicode decomposition,
+ * cleaning or lowercasing. Like {@link TextParser#parse(String)} the first word
+ * is empty if the cleaned text starts with whitespace that
+ * {@link String#trim()} does not remove.
+ *
+ * <p>
+ * A tokenizer is not thread safe, and the word returned by {@link #token()} is
+ * only valid until the next call to {@link #next()}.
+ * </p>
+ *
+ * <pre>
+ * TextTokenizer tokenizer = new TextTokenizer();
+ * tokenizer.reset(line);
+ * while (tokenizer.next()) {
+ * 	CharSequence word = tokenizer.token();
+ * }
+ * </pre>
+ */
+public class TextTokenizer {
+
+	/** An empty array of words. */
+	private static final String[] NONE = new String[0];
+
+	private final StringBuilder token;
+	private CharSequence text;
+	private int index;
+	private int end;
+
+	/** True if the default locale lowercases ASCII letters to ASCII letters. */
+	private boolean asciiLowerCase;
+
+	/** The words of the last non-ASCII word, parsed by {@link TextParser}. */
+	private String[] pending;
+	private int pendingIndex;
+
+	/** True until the first word is returned. */
+	private boolean first;
+	/** True if non-ASCII whitespace was found before the first word. */
+	private boolean leadingSpace;
+
+	/**
+	 * Initializes a tokenizer with no text.
+	 */
+	public TextTokenizer() {
+		this.token = new StringBuilder();
+		reset("");
+	}
+
+	/**
+	 * Start splitting new text into words.
+	 *
+	 * @param text The text to split
+	 * @return this tokenizer
+	 */
+	public TextTokenizer reset(CharSequence text) {
+		this.text = text;
+		this.index = 0;
+		this.end = text.length();
+		this.pending = NONE;
+		this.pendingIndex = 0;
+		this.first = true;
+		this.leadingSpace = false;
+		this.token.setLength(0);
+
+		// the Turkish and Azerbaijani dotless i makes ASCII lowercasing depend on the locale
+		String language = Locale.getDefault().getLanguage();
+		this.asciiLowerCase = !language.equals("tr") && !language.equals("az");
+		return this;
+	}
+
+	/**
+	 * Move to the next word of the text.
+	 *
+	 * @return true if there is another word, false at the end of the text
+	 */
+	public boolean next() {
+		while (true) {
+			if (pendingIndex < pending.length) {
+				token.setLength(0);
+				if (first) {
+					first = false;
+					if (leadingSpace) {
+						return true;
+					}
+				}
+				token.append(pending[pendingIndex++]);
+				return true;
+			}
+
+			while (index < end) {
+				char c = text.charAt(index);
+				if (c < 0x80) {
+					if (!isAsciiSpace(c)) {
+						break;
+					}
+					index++;
+				} else {
+					int codePoint = Character.codePointAt(text, index);
+					if (!isSpace(codePoint)) {
+						break;
+					}
+					leadingSpace |= first;
+					index += Character.charCount(codePoint);
+				}
+			}
+			if (index >= end) {
+				return false;
+			}
+
+			int start = index;
+			boolean ascii = asciiLowerCase;
+			token.setLength(0);
+			while (index < end) {
+				char c = text.charAt(index);
+				if (c < 0x80) {
+					if (isAsciiSpace(c)) {
+						break;
+					}
+					if (c >= 'a' && c <= 'z') {
+						token.append(c);
+					} else if (c >= 'A' && c <= 'Z') {
+						token.append((char) (c + ('a' - 'A')));
+					}
+					index++;
+				} else {
+					int codePoint = Character.codePointAt(text, index);
+					if (isSpace(codePoint)) {
+						break;
+					}
+					ascii = false;
+					index += Character.charCount(codePoint);
+				}
+			}
+
+			if (!ascii) {
+				pending = TextParser.parse(text.subSequence(start, index).toString());
+				pendingIndex = 0;
+			} else if (token.length() > 0) {
+				if (first) {
+					first = false;
+					if (leadingSpace) {
+						pending = new String[] { token.toString() };
+						pendingIndex = 0;
+						token.setLength(0);
+					}
+				}
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the current word, cleaned and lowercased.
+	 *
+	 * @return the current word, valid until the next call to {@link #next()}
+	 */
+	public CharSequence token() {
+		return token;
+	}
+
+	/**
+	 * Tests whether the ASCII character matches {@code (?U)\p{Space}}.
+	 *
+	 * @param c The character
+	 * @return true if it is whitespace
+	 */
+	private static boolean isAsciiSpace(char c) {
+		return c == ' ' || (c >= '\t' && c <= '\r');
+	}
+
+	/**
+	 * Tests whether the code point matches {@code (?U)\p{Space}}, the Unicode
+	 * White_Space property used by {@link TextParser#SPLIT_REGEX}.
+	 *
+	 * @param codePoint The code point
+	 * @return true if it is whitespace
+	 */
+	private static boolean isSpace(int codePoint) {
+		if (codePoint < 0x80) {
+			return isAsciiSpace((char) codePoint);
+		}
+		if (codePoint == 0x85) {
+			return true;
+		}
+		int type = Character.getType(codePoint);
+		return type == Character.SPACE_SEPARATOR || type == Character.LINE_SEPARATOR
+				|| type == Character.PARAGRAPH_SEPARATOR;
+	}
+}
@@ -1,17 +1,119 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ThreadSafeInvertedIndex extends InvertedIndex {
+
+	/** The shortest time between two published generations, in milliseconds. */
+	public static final long PUBLISH_DELAY = 100;
+
+	/**
+	 * How many times longer than the last freeze to wait before the next one, so
+	 * the writers wait for a freeze at most a fifth of the time.
+	 */
+	private static final int PUBLISH_COST = 4;
+
+	/** The one daemon thread that publishes the scheduled changes of every index. */
+	private static final ScheduledExecutorService PUBLISHER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread publisher = new Thread(r, "index-publisher");
+		publisher.setDaemon(true);
+		return publisher;
+	});
+
 	private final ReadWriteLock lock;
 
+	/** True if readers search the published snapshot instead of taking the lock. */
+	private final boolean versioned;
+	/** The last published generation of this index, only used when versioned. */
+	private volatile FrozenInvertedIndex snapshot;
+	/** Counts the changes made to this index, increased by every writer. */
+	private volatile long generation;
+	/** The generation the snapshot was frozen at. */
+	private volatile long published;
+	/** Held by the one thread that is freezing a new snapshot. */
+	private final Object publishing;
+	/** Set while a background thread waits to publish the changes. */
+	private final AtomicBoolean scheduled;
+	/** The time the last freeze took, in milliseconds. */
+	private volatile long cost;
+
 	/**
 	 * @Override The constructor of the ThreadSafeInvertedIndex
 	 */
 	public ThreadSafeInvertedIndex() {
+		this(false);
+	}
+
+	/**
+	 * The constructor of the ThreadSafeInvertedIndex. In the multi-version mode
+	 * the searches read the last published immutable generation of the index
+	 * without ever waiting for a writer. Freezing a generation copies the whole
+	 * index, so it is not done for every change: a background thread publishes
+	 * the changes of at least {@link #PUBLISH_DELAY} milliseconds at once, and of
+	 * longer when the index takes long to freeze. A crawl of many pages then
+	 * copies the index a few times instead of once per page.
+	 * 
+	 * @param versioned True to search published snapshots instead of locking
+	 */
+	public ThreadSafeInvertedIndex(boolean versioned) {
 		super();
 		lock = new ReadWriteLock();
+		this.versioned = versioned;
+		this.publishing = new Object();
+		this.generation = 0;
+		this.published = 0;
+		this.snapshot = versioned ? super.freeze() : null;
+		this.scheduled = new AtomicBoolean();
+		this.cost = 0;
+	}
+
+	/**
+	 * It will freeze and publish the changes made since the last published
+	 * generation right away, instead of waiting for the background thread. It
+	 * returns once the snapshot has every change made before it was called. When
+	 * another thread is freezing the index already, it waits for that freeze and
+	 * only freezes again if that one started too early.
+	 */
+	public void publish() {
+		if (!versioned) {
+			return;
+		}
+		long wanted = generation;
+		if (published >= wanted) {
+			return;
+		}
+		synchronized (publishing) {
+			if (published >= wanted) {
+				return;
+			}
+			lock.lockReadOnly();
+			try {
+				long current = generation;
+				long start = System.currentTimeMillis();
+				snapshot = super.freeze();
+				published = current;
+				cost = System.currentTimeMillis() - start;
+			} finally {
+				lock.unlockReadOnly();
+			}
+		}
+	}
+
+	/**
+	 * It will return the number of changes made to this index so far. In the
+	 * multi-version mode it is the generation of the published snapshot, which is
+	 * what the searches see.
+	 * 
+	 * @return the generation of this index
+	 */
+	public long getGeneration() {
+		return versioned ? published : generation;
 	}
 
 	/**
@@ -26,9 +128,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		lock.lockReadWrite();
 		try {
 			super.add(word, path, position);
+			generation++;
 		} finally {
 			lock.unlockReadWrite();
 		}
+		changed();
 	}
 
 	/**
@@ -38,6 +142,9 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	 * @return return True if contain the word otherwise return false.
 	 */
 	public boolean contains(String word) {
+		if (versioned) {
+			return snapshot.contains(word);
+		}
 		lock.lockReadOnly();
 		try {
 			return super.contains(word);
@@ -55,6 +162,9 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	 * @return true if the word is stored in the index at the specified file
 	 */
 	public boolean contains(String word, String location) {
+		if (versioned) {
+			return snapshot.contains(word, location);
+		}
 		lock.lockReadOnly();
 		try {
 			return super.contains(word, location);
@@ -72,6 +182,9 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	 * @return true if the word is stored in the index at the specified file
 	 */
 	public boolean contains(String word, String location, int position) {
+		if (versioned) {
+			return snapshot.contains(word, location, position);
+		}
 		lock.lockReadOnly();
 		try {
 			return super.contains(word, location, position);
@@ -85,6 +198,9 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	 *           invertedIndex data structure
 	 */
 	public ArrayList<Result> exactSearch(TreeSet<String> arrayline) {
+		if (versioned) {
+			return QueryEngine.exactSearch(snapshot, arrayline, getSearchSettings());
+		}
 		lock.lockReadOnly();
 		try {
 			return super.exactSearch(arrayline);
@@ -98,6 +214,9 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	 *           inverted index data structure
 	 */
 	public ArrayList<Result> partialSearch(TreeSet<String> arrayline) {
+		if (versioned) {
+			return QueryEngine.partialSearch(snapshot, arrayline, getSearchSettings());
+		}
 		lock.lockReadOnly();
 		try {
 			return super.partialSearch(arrayline);
@@ -106,6 +225,53 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 
+	/**
+	 * @Override It will search the index and return only the best k results
+	 */
+	public ArrayList<Result> search(TreeSet<String> arrayline, boolean exact, int k) {
+		if (versioned) {
+			return QueryEngine.search(snapshot, arrayline, exact, k, getSearchSettings());
+		}
+		lock.lockReadOnly();
+		try {
+			return super.search(arrayline, exact, k);
+		} finally {
+			lock.unlockReadOnly();
+		}
+	}
+
+	/**
+	 * @Override It will search the index with a query that may have phrase and
+	 *           proximity clauses
+	 */
+	public ArrayList<Result> search(Query query, boolean exact, int k) {
+		if (versioned) {
+			return QueryEngine.search(snapshot, query, exact, k, getSearchSettings());
+		}
+		lock.lockReadOnly();
+		try {
+			return super.search(query, exact, k);
+		} finally {
+			lock.unlockReadOnly();
+		}
+	}
+
+	/**
+	 * @Override It will search the index for every query of a batch, with the
+	 *           lock held until every query is done
+	 */
+	public ArrayList<ArrayList<Result>> search(List<Query> queries, boolean exact, WorkQueue queue) {
+		if (versioned) {
+			return QueryBatch.search(snapshot, queries, exact, queue, getSearchSettings());
+		}
+		lock.lockReadOnly();
+		try {
+			return super.search(queries, exact, queue);
+		} finally {
+			lock.unlockReadOnly();
+		}
+	}
+
 	/***
 	 * @Override This method will make a check output is valid or not. Then it will
 	 *           put on a asDoubleNestedObject to convert to JON object.
@@ -113,6 +279,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	 * @param output the file's path that need to write to
 	 */
 	public void toJSON(Path output) throws IOException {
+		if (versioned) {
+			publish();
+			snapshot.toJSON(output);
+			return;
+		}
 		lock.lockReadOnly();
 		try {
 			super.toJSON(output);
@@ -128,6 +299,11 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 	 * @throws IOException IOException if the writer encounters any issues
 	 */
 	public void toLocationJSON(Path output) throws IOException {
+		if (versioned) {
+			publish();
+			snapshot.toLocationJSON(output);
+			return;
+		}
 		lock.lockReadOnly();
 		try {
 			super.toLocationJSON(output);
@@ -137,6 +313,48 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		}
 	}
 
+	/**
+	 * @Override Copy this index into an immutable {@link FrozenInvertedIndex}
+	 *           that can be searched without taking this lock. In the
+	 *           multi-version mode this is the latest published generation.
+	 * 
+	 * @return the frozen copy of this index
+	 */
+	public FrozenInvertedIndex freeze() {
+		if (versioned) {
+			publish();
+			return snapshot;
+		}
+		lock.lockReadOnly();
+		try {
+			return super.freeze();
+		} finally {
+			lock.unlockReadOnly();
+		}
+	}
+
+	/**
+	 * @Override Write this index as a segment file while holding the read lock.
+	 *           In the multi-version mode the latest published generation is
+	 *           written.
+	 * 
+	 * @param output The path of the segment file
+	 * @throws IOException if the writer encounters any issues
+	 */
+	public void saveSegment(Path output) throws IOException {
+		if (versioned) {
+			publish();
+			snapshot.saveSegment(output);
+			return;
+		}
+		lock.lockReadOnly();
+		try {
+			super.saveSegment(output);
+		} finally {
+			lock.unlockReadOnly();
+		}
+	}
+
 	/**
 	 * @Override Helper method return a TreeSet of given word and path
 	 * 
@@ -148,9 +366,40 @@ public class ThreadSafeInvertedIndex extends InvertedIndex {
 		lock.lockReadWrite();
 		try {
 			super.addAll(temp);
+			generation++;
+		} finally {
+			lock.unlockReadWrite();
+		}
+		changed();
+	}
+
+	/**
+	 * @Override Add every word of a frozen index to this index.
+	 * 
+	 * @param other The frozen index to add
+	 */
+	public void addAll(FrozenInvertedIndex other) {
+		lock.lockReadWrite();
+		try {
+			super.addAll(other);
+			generation++;
 		} finally {
 			lock.unlockReadWrite();
 		}
+		changed();
 	}
 
+	/**
+	 * Schedules the publisher thread to publish the change after the delay, unless
+	 * it is scheduled already. The changes made until it runs go into the same
+	 * generation.
+	 */
+	private void changed() {
+		if (versioned && scheduled.compareAndSet(false, true)) {
+			PUBLISHER.schedule(() -> {
+				scheduled.set(false);
+				publish();
+			}, Math.max(PUBLISH_DELAY, cost * PUBLISH_COST), TimeUnit.MILLISECONDS);
+		}
+	}
 }
@@ -7,6 +7,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
@@ -26,6 +31,8 @@ public class TreeJSONWriter {
 
 	/***
 	 * Writes the element surrounded by quotes using the provided {@link Writer}.
+	 * Quotes and backslashes inside the element, like the quotes of a phrase
+	 * query, are escaped.
 	 * 
 	 * @param element The element to quote
 	 * @param writer The writer to use
@@ -33,7 +40,17 @@ public class TreeJSONWriter {
 	 */
 	public static void quote(String element, Writer writer) throws IOException {
 		writer.write('"');
-		writer.write(element);
+		if (element.indexOf('"') < 0 && element.indexOf('\\') < 0) {
+			writer.write(element);
+		} else {
+			for (int i = 0; i < element.length(); i++) {
+				char c = element.charAt(i);
+				if (c == '"' || c == '\\') {
+					writer.write('\\');
+				}
+				writer.write(c);
+			}
+		}
 		writer.write('"');
 	}
 
@@ -103,6 +120,33 @@ public class TreeJSONWriter {
 		writer.write("]");
 	}
 
+	/**
+	 * Writes the packed positions formatted as a pretty JSON array of numbers using
+	 * the provided {@link Writer} and indentation level.
+	 *
+	 * @param elements The positions to convert to JSON
+	 * @param writer The writer to use
+	 * @param level The initial indentation level
+	 * @throws IOException If the writer encounters any issues
+	 *
+	 * @see #asArray(TreeSet, Writer, int)
+	 */
+	public static void asArray(PositionList elements, Writer writer, int level) throws IOException {
+		writer.write('[');
+		writer.write(System.lineSeparator());
+		PrimitiveIterator.OfInt it = elements.iterator();
+		while (it.hasNext()) {
+			indent(level + 1, writer);
+			writer.write(Integer.toString(it.nextInt()));
+			if (it.hasNext()) {
+				writer.write(",");
+			}
+			writer.write(System.lineSeparator());
+		}
+		indent(level, writer);
+		writer.write("]");
+	}
+
 	/**
 	 * Returns the map of elements formatted as a pretty JSON object.
 	 *
@@ -180,33 +224,37 @@ public class TreeJSONWriter {
 	 * @param elements the elements to convert to JSON
 	 * @return {@link String} containing the elements in pretty JSON format
 	 *
-	 * @see #asNestedObject(TreeMap, Writer, int)
+	 * @see #asNestedObject(PostingList, DocumentDictionary, int[], Writer, int)
 	 */
 
 	/**
 	 * Writes the nested map of elements formatted as a nested pretty JSON object to
 	 * the specified file.
 	 *
-	 * @param elements the elements to convert to JSON
-	 * @param path     the path to the file write to output
+	 * @param elements  the words and their postings to convert to JSON, in word order
+	 * @param documents the dictionary used to turn document ids back into paths
+	 * @param path      the path to the file write to output
 	 * @throws IOException if the writer encounters any issues
 	 *
-	 * @see #asNestedObject(TreeMap, Writer, int)
+	 * @see #asNestedObject(PostingList, DocumentDictionary, int[], Writer, int)
 	 */
-	public static void asDoubleNestedObject(TreeMap<String, TreeMap<String, TreeSet<Integer>>> elements, Path path)
-			throws IOException {
+	public static void asDoubleNestedObject(Iterator<Map.Entry<String, PostingList>> elements,
+			DocumentDictionary documents, Path path) throws IOException {
 		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
-			asDoubleNestedObject(elements, writer, 0);
+			asDoubleNestedObject(elements, documents, writer, 0);
 		}
 	}
 
 	/**
-	 * Writes the nested map of elements as a nested pretty JSON object using the
-	 * provided {@link Writer} and indentation level.
+	 * Writes the postings of one word as a nested pretty JSON object using the
+	 * provided {@link Writer} and indentation level. The documents are written in
+	 * the order of their paths.
 	 *
-	 * @param elements The elements to convert to JSON
-	 * @param writer The writer to use
-	 * @param level The initial indentation level
+	 * @param elements  The postings to convert to JSON
+	 * @param documents The dictionary used to turn document ids back into paths
+	 * @param ranks     The rank of every document id when sorted by path
+	 * @param writer    The writer to use
+	 * @param level     The initial indentation level
 	 * @throws IOException if the writer encounters any issues
 	 *
 	 * @see Writer#write(String)
@@ -217,25 +265,29 @@ public class TreeJSONWriter {
 	 * @see #indent(int, Writer)
 	 * @see #quote(String, Writer)
 	 *
-	 * @see #asArray(TreeSet, Writer, int)
+	 * @see DocumentDictionary#ranks()
+	 * @see #asArray(PositionList, Writer, int)
 	 */
-	public static void asNestedObject(TreeMap<String, TreeSet<Integer>> elements, Writer writer, int level)
-			throws IOException {
+	public static void asNestedObject(PostingList elements, DocumentDictionary documents, int[] ranks,
+			Writer writer, int level) throws IOException {
+		// sort the indexes of the postings by path rank without boxing them
+		long[] order = new long[elements.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = ((long) ranks[elements.document(i)] << 32) | i;
+		}
+		Arrays.sort(order);
+
 		writer.write('{');
 		writer.write(System.lineSeparator());
-		if (!elements.isEmpty()) {
-			for (String element : elements.headMap(elements.lastKey()).keySet()) {
-				indent(level + 1, writer);
-				TreeJSONWriter.quote(element, writer);
-				writer.write(": ");
-				asArray(elements.get(element), writer, level + 1);
-				writer.write(",");
-				writer.write(System.lineSeparator());
-			}
+		for (int i = 0; i < order.length; i++) {
+			int index = (int) order[i];
 			indent(level + 1, writer);
-			TreeJSONWriter.quote(elements.lastKey(), writer);
+			TreeJSONWriter.quote(documents.getPath(elements.document(index)), writer);
 			writer.write(": ");
-			asArray(elements.get(elements.lastKey()), writer, level + 1);
+			asArray(elements.positions(index), writer, level + 1);
+			if (i < order.length - 1) {
+				writer.write(",");
+			}
 			writer.write(System.lineSeparator());
 		}
 		indent(level, writer);
@@ -243,31 +295,31 @@ public class TreeJSONWriter {
 	}
 	/**
 	 * Make the invertedindex data structure to the JON object
-	 * @param elements The elements to convert to JSON
+	 * @param elements The words and their postings to convert to JSON, in word order
+	 * @param documents The dictionary used to turn document ids back into paths
 	 * @param  writer The writer to use
 	 * @param   level The initial indentation level
 	 * @throws IOException IOException if the writer encounters any issues
 	 * 
 	 */
 
-	public static void asDoubleNestedObject(TreeMap<String, TreeMap<String, TreeSet<Integer>>> elements, Writer writer,
-			int level) throws IOException {
+	public static void asDoubleNestedObject(Iterator<Map.Entry<String, PostingList>> elements,
+			DocumentDictionary documents, Writer writer, int level) throws IOException {
+		int[] ranks = documents.ranks();
 
 		writer.write('{');
 		writer.write(System.lineSeparator());
-		if (!elements.isEmpty()) {
-			for (String element : elements.headMap(elements.lastKey()).keySet()) {
-				indent(level + 1, writer);
-				TreeJSONWriter.quote(element, writer);
-				writer.write(": ");
-				asNestedObject(elements.get(element), writer, level); 
-				writer.write(",");
-				writer.write(System.lineSeparator());
-			}
+		while (elements.hasNext()) {
+			Map.Entry<String, PostingList> element = elements.next();
 			indent(level + 1, writer);
-			TreeJSONWriter.quote(elements.lastKey(), writer);
+			TreeJSONWriter.quote(element.getKey(), writer);
 			writer.write(": ");
-			asNestedObject(elements.get(elements.lastKey()), writer, level + 1);
+			if (elements.hasNext()) {
+				asNestedObject(element.getValue(), documents, ranks, writer, level); 
+				writer.write(",");
+			} else {
+				asNestedObject(element.getValue(), documents, ranks, writer, level + 1);
+			}
 			writer.write(System.lineSeparator());
 		}
 		indent(level, writer);
@@ -279,7 +331,7 @@ public class TreeJSONWriter {
 	 * @param path The path to the file write to output
 	 * @throws IOException IOException if the writer encounters any issues
 	 */
-	public static void searchNestedObject(TreeMap<String,ArrayList<Result>> result,Path path) throws IOException
+	public static void searchNestedObject(SortedMap<String,ArrayList<Result>> result,Path path) throws IOException
 	{
 		try (BufferedWriter writer = Files.newBufferedWriter(path,
 				StandardCharsets.UTF_8)) {
@@ -293,7 +345,7 @@ public class TreeJSONWriter {
 	 * @param level The initial indentation level
 	 * @throws IOException IOException IOException if the writer encounters any issues
 	 */
-	public static void searchNestedObject(TreeMap<String,ArrayList<Result>> result,Writer writer, int level) throws IOException
+	public static void searchNestedObject(SortedMap<String,ArrayList<Result>> result,Writer writer, int level) throws IOException
 	{
 		DecimalFormat FORMATTER = new DecimalFormat("0.000000");
 		writer.write('[');
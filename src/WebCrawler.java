@@ -1,10 +1,9 @@
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashSet;
 
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
-
 /**
  * Craw the seed url base on given limit number
  * 
@@ -14,12 +13,32 @@ public class WebCrawler {
 
 	private final HashSet<URL> allUrl;
 	private final WorkQueue worker;
-	private final ThreadSafeInvertedIndex index;
+	private final WritableIndexInterface index;
+	/** Fetches the pages without blocking a worker, or null to fetch in the workers. */
+	private final AsyncFetcher fetcher;
+	/** The pages that are being fetched or parsed, only counted with a fetcher. */
+	private final PendingPages pending;
+
+	public WebCrawler(WorkQueue worker, WritableIndexInterface threadSafe) {
+		this(worker, threadSafe, null);
+	}
 
-	public WebCrawler(WorkQueue worker, ThreadSafeInvertedIndex threadSafe) {
+	/**
+	 * The constructor of the WebCrawler. With a fetcher the pages are fetched
+	 * asynchronously, so many pages can be on their way while the workers only
+	 * parse and index the pages that arrived.
+	 * 
+	 * @param worker     The work queue that parses and indexes the pages
+	 * @param threadSafe The thread safe index to add the pages to
+	 * @param fetcher    The asynchronous fetcher, or null to fetch every page in
+	 *                   a worker
+	 */
+	public WebCrawler(WorkQueue worker, WritableIndexInterface threadSafe, AsyncFetcher fetcher) {
 		this.worker = worker;
 		this.allUrl = new HashSet<URL>();
 		this.index = threadSafe;
+		this.fetcher = fetcher;
+		this.pending = new PendingPages();
 	}
 
 	/**
@@ -28,9 +47,52 @@ public class WebCrawler {
 	 * @param limit the maximum number of url to craw
 	 */
 	public void craw(URL seed, int limit) {
-			allUrl.add(seed);
-			worker.execute(new WebCrawlerTask(seed, limit));
+			synchronized (allUrl) {
+				allUrl.add(seed);
+			}
+			visit(seed, limit);
+			if (fetcher != null) {
+				pending.await();
+			}
 			worker.finish();
+			// the searches see every page now instead of after the publish delay
+			index.publish();
+	}
+
+	/**
+	 * Fetch the page and crawl it. Without a fetcher the page is fetched by a
+	 * worker, otherwise a worker only gets the page once it arrived.
+	 * 
+	 * @param url   The page to crawl
+	 * @param limit the maximum number of url to craw
+	 */
+	private void visit(URL url, int limit) {
+		if (fetcher == null) {
+			worker.execute(new WebCrawlerTask(url, limit, null));
+			return;
+		}
+		pending.start();
+		try {
+			fetcher.fetchHTML(url, 3).whenComplete((html, error) -> {
+				if (error != null) {
+					System.err.println("Unable to read the page: " + url.toString());
+					pending.finish();
+				} else if (html == null) {
+					pending.finish();
+				} else {
+					try {
+						worker.execute(new WebCrawlerTask(url, limit, html));
+					} catch (RuntimeException e) {
+						// the page is never parsed, so the crawl must not wait for it
+						System.err.println("Unable to parse the page: " + url.toString());
+						pending.finish();
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			pending.finish();
+			throw e;
+		}
 	}
 
 	/**
@@ -42,46 +104,84 @@ public class WebCrawler {
 
 		private final URL Url;
 		private final int limit;
+		private final String fetched;
 
-		public WebCrawlerTask(URL url, int limit) {
+		/**
+		 * @param url     The page to crawl
+		 * @param limit   the maximum number of url to craw
+		 * @param fetched The html of the page if it was already fetched, or null
+		 */
+		public WebCrawlerTask(URL url, int limit, String fetched) {
 			this.Url = url;
 			this.limit = limit;
+			this.fetched = fetched;
 		}
 
+		/**
+		 * Fetch the page once, then add its words to the index and crawl its links
+		 * from the same html.
+		 */
 		@Override
 		public void run() {
 			try {
 
-				var html = HTMLFetcher.fetchHTML(Url, 3);
+				var html = fetched != null ? fetched : HTMLFetcher.fetchHTML(Url, 3);
 				if(html == null) {
 					return;
 				}
 
-				InvertedIndex temp = new InvertedIndex();
-				var stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
-				int start = 1;
-				for(String s: TextParser.parse(HTMLCleaner.stripHTML(html))) {
-					temp.add(stemmer.stem(s).toString(), Url.toString(), start++);
+				addWords(html);
+				addLinks(html);
+			} catch (IOException e) {
+				System.err.println("Unable to read the page: " + Url.toString());
+			} finally {
+				if (fetcher != null) {
+					pending.finish();
 				}
-				index.addAll(temp);
+			}
+		}
+
+		/**
+		 * Add the words of the page to the index
+		 * 
+		 * @param html The html of the page
+		 */
+		private void addWords(String html) {
+			InvertedIndex temp = new InvertedIndex();
+			int start = 1;
+			var tokenizer = new TextTokenizer().reset(HTMLCleaner.stripHTML(html));
+			while(tokenizer.next()) {
+				temp.add(StemCache.SHARED.stem(tokenizer.token()), Url.toString(), start++);
+			}
+			index.addAll(temp);
+		}
 
-				if(allUrl.size() < limit) {
-					ArrayList<URL> links = LinkParser.listLinks(Url, LinkParser.fetchHTML(Url));
+		/**
+		 * Crawl the links of the page until the limit is reached
+		 * 
+		 * @param html The html of the page
+		 * @throws MalformedURLException if a link is not a valid url
+		 */
+		private void addLinks(String html) throws MalformedURLException {
+			if(allUrl.size() < limit) {
+				ArrayList<URL> links = LinkParser.listLinks(Url, html);
+				ArrayList<URL> found = new ArrayList<URL>();
+				synchronized (allUrl) {
 					for (URL link : links) {
-						synchronized (allUrl) {
-							if (allUrl.size() >= limit) {
-								break;
-							} else {
-								if (!allUrl.contains(link)) {
-									allUrl.add(link);
-									worker.execute(new WebCrawlerTask(link, limit));
-								}
+						if (allUrl.size() >= limit) {
+							break;
+						} else {
+							if (!allUrl.contains(link)) {
+								allUrl.add(link);
+								found.add(link);
 							}
 						}
 					}
 				}
-			} catch (IOException e) {
-				System.err.println("Unable to read the page: " + Url.toString());
+				// outside the lock, since the fetcher may wait for a free request
+				for (URL link : found) {
+					visit(link, limit);
+				}
 			}
 		}
 	}
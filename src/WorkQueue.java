@@ -1,4 +1,7 @@
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.LinkedList;
+import java.util.function.IntConsumer;
 
 /**
  * A simple work queue implementation based on the IBM developerWorks article by
@@ -26,6 +29,18 @@ public class WorkQueue {
 	/** The default number of threads to use when not specified. */
 	public static final int DEFAULT = 5;
 
+	/**
+	 * Thread.startVirtualThread(Runnable), or null when this Java has no virtual
+	 * threads. It is found by reflection so the code still runs on older Java.
+	 */
+	private static final Method START_VIRTUAL = findVirtualThreads();
+
+	/** True if every task runs in a virtual thread of its own. */
+	private final boolean virtual;
+
+	/** The number of threads, or how many tasks to split work into if virtual. */
+	private final int threads;
+
 	private int pending;
 
 	/**
@@ -43,17 +58,74 @@ public class WorkQueue {
 	 * @param threads number of worker threads; should be greater than 1
 	 */
 	public WorkQueue(int threads) {
+		this(threads, false);
+	}
+
+	/**
+	 * Starts a work queue that can run every task in a virtual thread of its own
+	 * instead of in a fixed pool of threads, so thousands of tasks that wait for
+	 * the network do not need thousands of threads of the system. The queue falls
+	 * back to the pool when this Java has no virtual threads, see
+	 * {@link #isVirtual()}.
+	 *
+	 * @param threads number of worker threads; should be greater than 1. With
+	 *                virtual threads it is only the number of parts work is split
+	 *                into, see {@link #size()}
+	 * @param virtual true to run every task in a virtual thread of its own
+	 */
+	public WorkQueue(int threads, boolean virtual) {
 		this.queue = new LinkedList<Runnable>();
-		this.workers = new PoolWorker[threads];
+		this.virtual = virtual && START_VIRTUAL != null;
+		this.threads = threads;
+		this.workers = new PoolWorker[this.virtual ? 0 : threads];
 		this.pending = 0;
 		this.shutdown = false;
 
-		for (int i = 0; i < threads; i++) {
+		for (int i = 0; i < workers.length; i++) {
 			this.workers[i] = new PoolWorker();
 			this.workers[i].start();
 		}
 	}
 
+	/**
+	 * Returns whether this Java can start virtual threads. They need Java 21, or
+	 * Java 19 and 20 with the preview features enabled.
+	 *
+	 * @return true if there are virtual threads
+	 */
+	public static boolean hasVirtualThreads() {
+		return START_VIRTUAL != null;
+	}
+
+	/**
+	 * Returns whether every task runs in a virtual thread of its own.
+	 *
+	 * @return true for virtual threads, false for the pool of worker threads
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * Returns the method that starts a virtual thread, if it works.
+	 *
+	 * @return the method, or null if there are no virtual threads
+	 */
+	private static Method findVirtualThreads() {
+		try {
+			Method start = Thread.class.getMethod("startVirtualThread", Runnable.class);
+			// a preview of Java 19 and 20 has the method but throws when it is off
+			((Thread) start.invoke(null, (Runnable) () -> {
+			})).join();
+			return start;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
 	/**
 	 * Adds a work request to the queue. A thread will process this request when
 	 * available.
@@ -61,6 +133,18 @@ public class WorkQueue {
 	 * @param r work request (in the form of a {@link Runnable} object)
 	 */
 	public void execute(Runnable r) {
+		if (virtual) {
+			if (!shutdown) {
+				increasePending();
+				try {
+					START_VIRTUAL.invoke(null, (Runnable) () -> run(r));
+				} catch (IllegalAccessException | InvocationTargetException e) {
+					decrementPending();
+					throw new IllegalStateException("Unable to start a virtual thread", e);
+				}
+			}
+			return;
+		}
 		increasePending();
 		synchronized (queue) {
 			queue.addLast(r);
@@ -68,6 +152,21 @@ public class WorkQueue {
 		}
 	}
 
+	/**
+	 * Runs the work request in the thread of a virtual queue.
+	 *
+	 * @param r work request
+	 */
+	private void run(Runnable r) {
+		try {
+			r.run();
+		} catch (RuntimeException ex) {
+			System.err.println("Warning: Work queue encountered an exception while running.");
+		} finally {
+			decrementPending();
+		}
+	}
+
 	private synchronized void increasePending() {
 		this.pending++;
 	}
@@ -98,6 +197,26 @@ public class WorkQueue {
 
 	}
 
+	/**
+	 * Runs the task for every number from 0 up to the count and waits for all of
+	 * them. The calling thread works on the numbers too and only waits for the
+	 * numbers the workers already took, so it still finishes when every worker is
+	 * busy with something else, and a task may call this method again. Everything
+	 * the tasks wrote is seen by the calling thread once this returns.
+	 *
+	 * @param count The number of tasks
+	 * @param task  The task to run for every number
+	 * @throws RuntimeException the first exception thrown by any of the tasks
+	 */
+	public void invokeAll(int count, IntConsumer task) {
+		Tasks tasks = new Tasks(count, task);
+		for (int helper = Math.min(threads, count - 1); helper > 0; helper--) {
+			execute(tasks);
+		}
+		tasks.run();
+		tasks.await();
+	}
+
 	/**
 	 * Asks the queue to shutdown. Any unprocessed work will not be finished, but
 	 * threads in-progress will not be interrupted.
@@ -111,12 +230,90 @@ public class WorkQueue {
 	}
 
 	/**
-	 * Returns the number of worker threads being used by the work queue.
+	 * Returns the number of worker threads being used by the work queue. With
+	 * virtual threads there is no fixed number, and this is the number of threads
+	 * the queue was started with, so callers still split their work into as many
+	 * parts.
 	 *
 	 * @return number of worker threads
 	 */
 	public int size() {
-		return workers.length;
+		return threads;
+	}
+
+	/**
+	 * The numbers of one {@link #invokeAll(int, IntConsumer)}, taken one at a time
+	 * by every thread that runs it.
+	 */
+	private static class Tasks implements Runnable {
+		private final int count;
+		private final IntConsumer task;
+		private int next;
+		private int finished;
+		private RuntimeException failure;
+
+		/**
+		 * Initializes the tasks.
+		 *
+		 * @param count The number of tasks
+		 * @param task  The task to run for every number
+		 */
+		public Tasks(int count, IntConsumer task) {
+			this.count = count;
+			this.task = task;
+			this.next = 0;
+			this.finished = 0;
+		}
+
+		@Override
+		public void run() {
+			int number;
+			while ((number = take()) < count) {
+				try {
+					task.accept(number);
+				} catch (RuntimeException e) {
+					synchronized (this) {
+						if (failure == null) {
+							failure = e;
+						}
+					}
+				}
+				synchronized (this) {
+					if (++finished == count) {
+						notifyAll();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Returns the next number to work on.
+		 *
+		 * @return the number, or the count when there is nothing left
+		 */
+		private synchronized int take() {
+			return next < count ? next++ : count;
+		}
+
+		/**
+		 * Waits for every task to finish, and throws the first exception of any task.
+		 */
+		public synchronized void await() {
+			boolean interrupted = false;
+			while (finished < count) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		}
 	}
 
 	/**
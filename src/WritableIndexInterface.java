@@ -0,0 +1,63 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * An index that pages and files can be added to while it is searched. The
+ * builders and crawlers add to it through these methods, so they work the same
+ * with an {@link InvertedIndex}, a {@link ThreadSafeInvertedIndex} or a
+ * {@link ConcurrentInvertedIndex}. Only the last two can be added to by several
+ * threads at once.
+ */
+public interface WritableIndexInterface extends InvertedIndexInterface, PostingsSource {
+
+	/**
+	 * This method will add the word, and the path of this word and the position to
+	 * the index data structure
+	 *
+	 * @param word     The word in the file
+	 * @param path     path of the file in directory
+	 * @param position The position in this file
+	 */
+	public void add(String word, String path, int position);
+
+	/**
+	 * Add every word of another index, for example the index of one page or file,
+	 * to this index.
+	 *
+	 * @param other The index to add
+	 */
+	public void addAll(InvertedIndex other);
+
+	/**
+	 * Add every word of a frozen index, for example one loaded from a snapshot, to
+	 * this index.
+	 *
+	 * @param other The frozen index to add
+	 */
+	public void addAll(FrozenInvertedIndex other);
+
+	/**
+	 * Copy this index into an immutable {@link FrozenInvertedIndex} that can be
+	 * searched faster and without any locks.
+	 *
+	 * @return the frozen copy of this index
+	 */
+	public FrozenInvertedIndex freeze();
+
+	/**
+	 * Write this index as a segment file that can be searched through a memory
+	 * mapping with {@link IndexSegment#open(Path)}. The segment is written
+	 * straight from the postings, without freezing a copy of the index first.
+	 *
+	 * @param output The path of the segment file
+	 * @throws IOException if the writer encounters any issues
+	 */
+	public void saveSegment(Path output) throws IOException;
+
+	/**
+	 * It will make the changes so far visible to the searches right away. Only an
+	 * index that searches published snapshots has anything to do here.
+	 */
+	public default void publish() {
+	}
+}